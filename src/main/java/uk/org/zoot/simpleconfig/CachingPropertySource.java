@@ -0,0 +1,330 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A property source which caches the values of a slow dynamic source.
+ *
+ * Each value (including missing values) is cached for a time to live which
+ * can be set per property or for all properties of a configuration
+ * interface. Once a configurable fraction of the time to live has passed, the
+ * next read triggers a refresh on a background executor and continues to
+ * return the cached value, so values which are read regularly never expire.
+ * Readers only wait for the underlying source when a property is first read
+ * or has not been read for its whole time to live.
+ *
+ * Concurrent readers of a property which is not cached or has expired share
+ * a single read of the underlying source.
+ *
+ * If the underlying source fails, the previous value is kept (stale on
+ * error) and marked as failed, another refresh is attempted in the
+ * background on the first read after <code>ttl * (1 - refreshAhead)</code>
+ * (or the time to live if values are only refreshed on expiry), and so on
+ * until a refresh succeeds. Failures are only propagated when no previous
+ * value exists.
+ *
+ * The number of cached properties is bounded, least recently used values are
+ * evicted first.
+ *
+ * Created with {@link #builder(PropertySource)}.
+ */
+public final class CachingPropertySource implements DescriptorPropertySource {
+
+	private static final class Entry {
+		final String value;
+		final long loadedAt;
+		// the time after which a failed entry is refreshed again, or -1 if the last read succeeded
+		final long retryAt;
+		final AtomicBoolean refreshing = new AtomicBoolean();
+
+		Entry(String value, long loadedAt, long retryAt) {
+			this.value = value;
+			this.loadedAt = loadedAt;
+			this.retryAt = retryAt;
+		}
+
+		boolean isFailed() {
+			return retryAt >= 0;
+		}
+	}
+
+	private final PropertySource delegate;
+	private final long defaultTtlNanos;
+	private final Map<String, Long> ttlNanosByKey;
+	private final double refreshAheadFactor;
+	private final Executor executor;
+	private final Ticker ticker;
+	private final Cache<String, Entry> cache;
+
+	private CachingPropertySource(Builder builder) {
+		this.delegate = builder.delegate;
+		this.defaultTtlNanos = builder.defaultTtlNanos;
+		this.ttlNanosByKey = new HashMap<String, Long>(builder.ttlNanosByKey);
+		this.refreshAheadFactor = builder.refreshAheadFactor;
+		this.executor = builder.executor != null ? builder.executor : Executors.newSingleThreadExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("config-refresh-%d").build());
+		this.ticker = builder.ticker;
+		this.cache = CacheBuilder.newBuilder().maximumSize(builder.maximumSize).build();
+	}
+
+	/**
+	 * @param delegate the source to cache
+	 * @return a builder for a caching source
+	 */
+	public static Builder builder(PropertySource delegate) {
+		return new Builder(checkNotNull(delegate, "delegate is required"));
+	}
+
+	@Override
+	public String getProperty(String key) {
+		return get(key, null);
+	}
+
+	/**
+	 * Reads a property, looking it up by descriptor in the underlying source
+	 * if it supports it
+	 */
+	@Override
+	public String getProperty(PropertyDescription desc) {
+		return get(desc.getProperty(), desc);
+	}
+
+	@Override
+	public List<String> getAmbiguousKeys(PropertyDescription desc) {
+		return PropertySources.getAmbiguousKeys(delegate, desc);
+	}
+
+	@Override
+	public boolean isRelaxed() {
+		return PropertySources.isRelaxed(delegate);
+	}
+
+	private String get(String key, PropertyDescription desc) {
+		Entry entry = cache.getIfPresent(key);
+		if (entry == null) {
+			return load(key, desc, null).value;
+		}
+
+		long now = ticker.read();
+		if (entry.isFailed()) {
+			// keep serving the previous value until a refresh succeeds
+			if (now >= entry.retryAt) {
+				refreshInBackground(key, desc, entry);
+			}
+			return entry.value;
+		}
+		long ttl = ttlNanos(key);
+		long age = now - entry.loadedAt;
+		if (age < ttl) {
+			if (age >= (long) (ttl * refreshAheadFactor)) {
+				refreshInBackground(key, desc, entry);
+			}
+			return entry.value;
+		}
+
+		// the first reader to see the expired entry removes it, the others wait for its load
+		cache.asMap().remove(key, entry);
+		return load(key, desc, entry).value;
+	}
+
+	/**
+	 * Loads a value, concurrent loads of the same key share a single read of
+	 * the underlying source
+	 *
+	 * @param previous the expired entry, whose value is kept if the source fails
+	 */
+	private Entry load(final String key, final PropertyDescription desc, final Entry previous) {
+		try {
+			return cache.get(key, new Callable<Entry>() {
+
+				@Override
+				public Entry call() {
+					try {
+						return new Entry(fetch(key, desc), ticker.read(), -1);
+					} catch (RuntimeException e) {
+						if (previous == null) {
+							throw e;
+						}
+						return failed(key, previous.value);
+					}
+				}
+			});
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		} catch (UncheckedExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	private String fetch(String key, PropertyDescription desc) {
+		return desc != null ? PropertySources.getProperty(delegate, desc) : delegate.getProperty(key);
+	}
+
+	/**
+	 * @return an entry keeping a value after a failed read, which is retried
+	 *         after <code>ttl * (1 - refreshAhead)</code>
+	 */
+	private Entry failed(String key, String value) {
+		long now = ticker.read();
+		long ttl = ttlNanos(key);
+		long backoff = ttl - (long) (ttl * refreshAheadFactor);
+		return new Entry(value, now, now + (backoff > 0 ? backoff : ttl));
+	}
+
+	private void refreshInBackground(final String key, final PropertyDescription desc, final Entry entry) {
+		if (!entry.refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					Entry refreshed;
+					try {
+						refreshed = new Entry(fetch(key, desc), ticker.read(), -1);
+					} catch (RuntimeException e) {
+						// keep the current value, marked so that the next attempt waits
+						refreshed = failed(key, entry.value);
+					}
+					cache.asMap().replace(key, entry, refreshed);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// keep serving the cached value, a later read will try again
+			entry.refreshing.set(false);
+		}
+	}
+
+	private long ttlNanos(String key) {
+		Long ttl = ttlNanosByKey.get(key);
+		return ttl != null ? ttl : defaultTtlNanos;
+	}
+
+	/**
+	 * Discards a cached value so that the next read goes to the underlying source
+	 *
+	 * @param key
+	 */
+	public void invalidate(String key) {
+		cache.invalidate(key);
+	}
+
+	/**
+	 * Discards all cached values
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Builder for {@link CachingPropertySource}s
+	 */
+	public static final class Builder {
+		private final PropertySource delegate;
+		private final Map<String, Long> ttlNanosByKey = new HashMap<String, Long>();
+		private long defaultTtlNanos = TimeUnit.MINUTES.toNanos(1);
+		private double refreshAheadFactor = 0.75;
+		private long maximumSize = 10000;
+		private Executor executor;
+		private Ticker ticker = Ticker.systemTicker();
+
+		private Builder(PropertySource delegate) {
+			this.delegate = delegate;
+		}
+
+		/**
+		 * Sets the time to live of properties without a specific time to live,
+		 * defaults to one minute
+		 */
+		public Builder ttl(long duration, TimeUnit unit) {
+			this.defaultTtlNanos = toNanos(duration, unit);
+			return this;
+		}
+
+		/**
+		 * Sets the time to live of a single property
+		 */
+		public Builder ttl(String key, long duration, TimeUnit unit) {
+			ttlNanosByKey.put(checkNotNull(key, "key is required"), toNanos(duration, unit));
+			return this;
+		}
+
+		/**
+		 * Sets the time to live of every property of a configuration interface
+		 */
+		public Builder ttl(Class<?> type, long duration, TimeUnit unit) {
+			checkNotNull(type, "type is required");
+			long nanos = toNanos(duration, unit);
+			for (PropertyDescription desc : new ConfigBinder().extractDescriptors(type).values()) {
+				ttlNanosByKey.put(desc.getProperty(), nanos);
+			}
+			return this;
+		}
+
+		/**
+		 * Sets the fraction of the time to live after which a read triggers a
+		 * background refresh, defaults to 0.75
+		 */
+		public Builder refreshAhead(double factor) {
+			checkArgument(factor > 0 && factor <= 1, "factor must be in (0, 1]");
+			this.refreshAheadFactor = factor;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of cached properties, defaults to 10000
+		 */
+		public Builder maximumSize(long size) {
+			checkArgument(size >= 0, "size must be non-negative");
+			this.maximumSize = size;
+			return this;
+		}
+
+		/**
+		 * Sets the executor used for background refreshes, defaults to a single
+		 * daemon thread so that values loaded together are not all refreshed
+		 * against the underlying source at once
+		 */
+		public Builder executor(Executor executor) {
+			this.executor = checkNotNull(executor, "executor is required");
+			return this;
+		}
+
+		/**
+		 * Sets the time source, for testing
+		 */
+		public Builder ticker(Ticker ticker) {
+			this.ticker = checkNotNull(ticker, "ticker is required");
+			return this;
+		}
+
+		public CachingPropertySource build() {
+			return new CachingPropertySource(this);
+		}
+
+		private static long toNanos(long duration, TimeUnit unit) {
+			checkArgument(duration > 0, "duration must be positive");
+			return checkNotNull(unit, "unit is required").toNanos(duration);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package uk.org.zoot.simpleconfig;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable, memory-compact set of strings used for large multi-valued
+ * properties.
+ *
+ * Values are sorted, de-duplicated and packed into a single char buffer
+ * addressed by an offset table, lookups are a binary search over the buffer
+ * which does not allocate. A small bit filter keyed on
+ * {@link String#hashCode()} (which strings cache) rejects most absent values
+ * before searching. Iteration creates a new string per element.
+ */
+final class CompactStringSet extends AbstractSet<String> {
+
+	private static final int FILTER_BITS_PER_VALUE = 8;
+
+	private final char[] chars;
+	private final int[] offsets;
+	private final long[] filter;
+	private final int filterMask;
+
+	private CompactStringSet(char[] chars, int[] offsets, long[] filter) {
+		this.chars = chars;
+		this.offsets = offsets;
+		this.filter = filter;
+		this.filterMask = filter.length * 64 - 1;
+	}
+
+	/**
+	 * @param values the values of the set, which must not contain nulls
+	 * @return a compact copy of the values
+	 */
+	static CompactStringSet copyOf(Collection<String> values) {
+		String[] sorted = values.toArray(new String[values.size()]);
+		Arrays.sort(sorted);
+
+		int size = 0;
+		int length = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || !sorted[i].equals(sorted[size - 1])) {
+				sorted[size++] = sorted[i];
+				length += sorted[i].length();
+			}
+		}
+
+		char[] chars = new char[length];
+		int[] offsets = new int[size + 1];
+		int filterBits = Math.max(64, Integer.highestOneBit(Math.max(1, size * FILTER_BITS_PER_VALUE) - 1) << 1);
+		long[] filter = new long[filterBits / 64];
+		CompactStringSet set = new CompactStringSet(chars, offsets, filter);
+
+		int offset = 0;
+		for (int i = 0; i < size; i++) {
+			String value = sorted[i];
+			value.getChars(0, value.length(), chars, offset);
+			offsets[i] = offset;
+			offset += value.length();
+			set.addToFilter(value.hashCode());
+		}
+		offsets[size] = offset;
+		return set;
+	}
+
+	private void addToFilter(int hash) {
+		int bit1 = hash & filterMask;
+		int bit2 = secondHash(hash) & filterMask;
+		filter[bit1 >>> 6] |= 1L << bit1;
+		filter[bit2 >>> 6] |= 1L << bit2;
+	}
+
+	private boolean mightContain(int hash) {
+		int bit1 = hash & filterMask;
+		int bit2 = secondHash(hash) & filterMask;
+		return (filter[bit1 >>> 6] & (1L << bit1)) != 0 && (filter[bit2 >>> 6] & (1L << bit2)) != 0;
+	}
+
+	private static int secondHash(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof String)) {
+			return false;
+		}
+		String value = (String) o;
+		if (!mightContain(value.hashCode())) {
+			return false;
+		}
+		int low = 0;
+		int high = size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compareAt(mid, value);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Compares the element at an index with a value, in {@link String} order
+	 */
+	private int compareAt(int index, String value) {
+		int start = offsets[index];
+		int length = offsets[index + 1] - start;
+		int common = Math.min(length, value.length());
+		for (int i = 0; i < common; i++) {
+			int diff = chars[start + i] - value.charAt(i);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return length - value.length();
+	}
+
+	@Override
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return index < size();
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				int start = offsets[index];
+				index++;
+				return new String(chars, start, offsets[index] - start);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
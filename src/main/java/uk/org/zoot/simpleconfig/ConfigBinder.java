@@ -3,16 +3,37 @@ package uk.org.zoot.simpleconfig;
 import com.fasterxml.classmate.*;
 import com.fasterxml.classmate.members.ResolvedMethod;
 import com.google.common.base.*;
+import com.google.common.collect.ClassToInstanceMap;
+import com.google.common.collect.ImmutableClassToInstanceMap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
-
+import com.google.common.hash.HashCode;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
@@ -21,8 +42,47 @@ import static com.google.common.base.Preconditions.checkState;
  */
 public class ConfigBinder {
 
+	private static final Method GET_DESCRIPTORS_METHOD;
+
+	static {
+		try {
+			GET_DESCRIPTORS_METHOD = ConfigProxy.class.getMethod("getDescriptors");
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to get descriptor method", e);
+		}
+	}
+
+	/**
+	 * <code>Set&lt;String&gt;</code> properties are read-only, and those with at
+	 * least this many values are held in a compact form which is shared
+	 * between reads
+	 */
+	static final int COMPACT_SET_THRESHOLD = 256;
+
 	private final TypeResolver typeResolver = new TypeResolver();
 
+	private final ConcurrentMap<Class<?>, Map<Method, PropertyDescription>> descriptorCache = new ConcurrentHashMap<Class<?>, Map<Method, PropertyDescription>>();
+
+	private final EncryptedValues secrets;
+
+	/**
+	 * Creates a binder which does not support secret properties
+	 */
+	public ConfigBinder() {
+		this.secrets = null;
+	}
+
+	/**
+	 * Creates a binder which decrypts secret properties with keys from a
+	 * provider
+	 *
+	 * @param keyProvider the provider of decryption keys
+	 * @see ConfigProperty#secret()
+	 */
+	public ConfigBinder(KeyProvider keyProvider) {
+		this.secrets = new EncryptedValues(checkNotNull(keyProvider, "keyProvider is required"));
+	}
+
 	/**
 	 * Creates a property description from a specified method
 	 *
@@ -34,6 +94,7 @@ public class ConfigBinder {
 		String description;
 		boolean required = true;
 		String defaultValue;
+		boolean secret = false;
 		ResolvedType type = method.getReturnType();
 		checkState(type != null, "Type must be non-null on %s", method);
 		if (!validPropertyType(type)) {
@@ -52,6 +113,7 @@ public class ConfigBinder {
 			propertyName = pb.value();
 			description = pb.description();
 			required = pb.required();
+			secret = pb.secret();
 
 			if (ConfigProperty.NODEFAULT
 					.equals(pb.defaultValue())) {
@@ -65,6 +127,10 @@ public class ConfigBinder {
 			description = null;
 		}
 
+		if (secret && !type.isInstanceOf(String.class)) {
+			throw new InvalidConfigInterfaceException("Method " + method
+					+ " is secret, only String properties may be secret");
+		}
 		if (type.isPrimitive() && !required && defaultValue == null) {
 			throw new InvalidConfigException("property " + propertyName
 					+ " is optional, has no default and has a primititve type ");
@@ -83,8 +149,10 @@ public class ConfigBinder {
 			elementType = type.getErasedType();
 		}
 
+		List<PropertyConstraint> constraints = PropertyConstraints.compile(method, multiValued, elementType);
+
 		return new PropertyDescriptionImpl(method.getRawMember(), propertyName, description,
-				required, type.getErasedType(), multiValued, elementType,defaultValue);
+				required, type.getErasedType(), multiValued, elementType,defaultValue, constraints, secret);
 	}
 
 	private boolean validPropertyType(ResolvedType type) {
@@ -126,41 +194,388 @@ public class ConfigBinder {
 	 * @return a new interface of the properties object
 	 * @throws InvalidConfigException
 	 */
-	@SuppressWarnings("unchecked")
 	public <T> T bind(Class<T> type, final Properties bundle)
 			throws InvalidConfigException {
+		checkNotNull(bundle, "bundle is required");
+		return bind(type, PropertySources.fromProperties(bundle));
+	}
+
+	/**
+	 * Binds an interface to a property source, each property is read from the
+	 * source when the corresponding method is called
+	 *
+	 * @param type   the Destination Interface type
+	 * @param source the property source
+	 * @return a new interface of the property source
+	 * @throws InvalidConfigException
+	 */
+	public <T> T bind(Class<T> type, final PropertySource source)
+			throws InvalidConfigException {
+		checkNotNull(type, "type is required");
+		checkNotNull(source, "source is required");
+
+		final ConcurrentMap<PropertyDescription, ParsedValue> compactSets = new ConcurrentHashMap<PropertyDescription, ParsedValue>();
+		return createProxy(type, extractDescriptors(type), new ValueFetcher() {
+
+			@Override
+			public Object fetch(Method method, PropertyDescription desc) {
+				if (!isCompactSetProperty(desc)) {
+					return fetchPropertyValue(desc, source);
+				}
+				// string sets are read-only, so reuse them until the raw value changes
+				String raw = fetchRawValue(desc, source);
+				ParsedValue parsed = compactSets.get(desc);
+				if (parsed != null && (parsed.raw == raw || (raw != null && raw.equals(parsed.raw)))) {
+					return parsed.value;
+				}
+				Object value = convertPropertyValue(desc, raw);
+				compactSets.put(desc, new ParsedValue(raw, value));
+				return value;
+			}
+		}, true);
+	}
+
+	private static final class ParsedValue {
+		final String raw;
+		final Object value;
+
+		ParsedValue(String raw, Object value) {
+			this.raw = raw;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Binds an interface to the pre-converted values held in a snapshot
+	 *
+	 * @param type     the Destination Interface type
+	 * @param snapshot a snapshot containing the type
+	 * @return a new interface of the snapshot
+	 * @see #loadSnapshot(File, ByteSource, ConfigLoader, Class[])
+	 */
+	public <T> T bind(Class<T> type, final ConfigSnapshot snapshot) {
+		checkNotNull(type, "type is required");
+		checkNotNull(snapshot, "snapshot is required");
+		final Map<String, Object> values = snapshot.getValues(type);
+		checkArgument(values != null, "snapshot does not contain %s", type);
+
+		Map<Method, PropertyDescription> descriptors = extractDescriptors(type);
+		final Map<Method, Object> containers = new HashMap<Method, Object>();
+		for (Map.Entry<Method, PropertyDescription> entry : descriptors.entrySet()) {
+			Object value = values.get(entry.getKey().getName());
+			if (entry.getValue().isMultiValued()) {
+				value = createMultiValuedContainer(entry.getValue(), new ArrayList<Object>((List<?>) value));
+			}
+			containers.put(entry.getKey(), value);
+		}
+
+		return createProxy(type, descriptors, new ValueFetcher() {
+
+			@Override
+			public Object fetch(Method method, PropertyDescription desc) {
+				if (desc.isSecret()) {
+					return convertPropertyValue(desc, (String) containers.get(method));
+				}
+				return copyPropertyValue(desc, containers.get(method));
+			}
+		}, true);
+	}
+
+	/**
+	 * Loads a snapshot of validated, converted values for one or more
+	 * interfaces.
+	 *
+	 * The snapshot is keyed by a hash of the source content and the property
+	 * descriptors of the interfaces. When the snapshot file matches, values
+	 * are read directly from it without parsing or validating the source,
+	 * otherwise the source is loaded, validated against each interface and a
+	 * new snapshot file is written. A snapshot file which is missing, corrupt
+	 * or cannot be written is ignored.
+	 *
+	 * @param snapshotFile the file used to store the snapshot
+	 * @param source       the configuration source
+	 * @param loader       the loader used to parse the source when the snapshot does not match
+	 * @param types        the interfaces to include in the snapshot
+	 * @return a snapshot which can be passed to {@link #bind(Class, ConfigSnapshot)}
+	 * @throws IOException            if the source cannot be read
+	 * @throws InvalidConfigException if the source does not validate against the interfaces
+	 */
+	public ConfigSnapshot loadSnapshot(File snapshotFile, ByteSource source, ConfigLoader loader,
+			Class<?>... types) throws IOException, InvalidConfigException {
+		checkNotNull(snapshotFile, "snapshotFile is required");
+		checkNotNull(source, "source is required");
+		checkNotNull(loader, "loader is required");
+
+		Map<Class<?>, Map<Method, PropertyDescription>> descriptors = new LinkedHashMap<Class<?>, Map<Method, PropertyDescription>>();
+		for (Class<?> type : types) {
+			descriptors.put(type, extractDescriptors(type));
+		}
+		// the source is read once, so that the values always match the hash
+		byte[] content = source.read();
+		HashCode hash = ConfigSnapshot.hash(ByteStreams.asByteSource(content), loader, descriptors);
+
+		ConfigSnapshot snapshot = ConfigSnapshot.readIfMatches(snapshotFile, hash, descriptors);
+		if (snapshot != null) {
+			return snapshot;
+		}
+
+		Properties bundle = new Properties();
+		loader.load(new ByteArrayInputStream(content), bundle);
+
+		Map<String, Map<String, Object>> values = new LinkedHashMap<String, Map<String, Object>>();
+		for (Map.Entry<Class<?>, Map<Method, PropertyDescription>> entry : descriptors.entrySet()) {
+			PropertySource bundleSource = PropertySources.fromProperties(bundle);
+			Map<PropertyDescription, Object> fetched = fetchAll(entry.getValue().values(), bundleSource);
+			Map<String, Object> typeValues = new HashMap<String, Object>();
+			for (Map.Entry<Method, PropertyDescription> desc : entry.getValue().entrySet()) {
+				Object value = fetched.get(desc.getValue());
+				if (desc.getValue().isSecret()) {
+					// secrets are only held encrypted in the snapshot file
+					value = fetchRawValue(desc.getValue(), bundleSource);
+				} else if (desc.getValue().isMultiValued()) {
+					value = value.getClass().isArray() ? arrayToList(value) : new ArrayList<Object>((Collection<?>) value);
+				}
+				typeValues.put(desc.getKey().getName(), value);
+			}
+			values.put(entry.getKey().getName(), typeValues);
+		}
+		snapshot = new ConfigSnapshot(hash, values);
+		snapshot.writeQuietly(snapshotFile);
+		return snapshot;
+	}
+
+	/**
+	 * Loads a set of sources concurrently and merges them into a single
+	 * bundle, properties in later sources override those in earlier sources
+	 *
+	 * @param loader   the loader used to parse each source
+	 * @param sources  the sources to load
+	 * @param executor the executor on which sources are loaded
+	 * @return a future bundle, which fails if any source cannot be loaded
+	 */
+	public ListenableFuture<Properties> loadAsync(final ConfigLoader loader,
+			Iterable<? extends ByteSource> sources, Executor executor) {
+		checkNotNull(loader, "loader is required");
+		checkNotNull(sources, "sources is required");
+		checkNotNull(executor, "executor is required");
+
+		List<ListenableFuture<Properties>> loads = new ArrayList<ListenableFuture<Properties>>();
+		for (final ByteSource source : sources) {
+			ListenableFutureTask<Properties> load = ListenableFutureTask.create(new Callable<Properties>() {
+
+				@Override
+				public Properties call() throws IOException {
+					Properties bundle = new Properties();
+					InputStream in = source.openStream();
+					try {
+						loader.load(in, bundle);
+					} finally {
+						in.close();
+					}
+					return bundle;
+				}
+			});
+			executor.execute(load);
+			loads.add(load);
+		}
+		return Futures.transform(Futures.allAsList(loads), new Function<List<Properties>, Properties>() {
+
+			@Override
+			public Properties apply(List<Properties> bundles) {
+				Properties merged = new Properties();
+				for (Properties bundle : bundles) {
+					merged.putAll(bundle);
+				}
+				return merged;
+			}
+		});
+	}
+
+	/**
+	 * Binds and validates an interface asynchronously, descriptors are
+	 * extracted while the bundle is still loading
+	 *
+	 * @param type     the Destination Interface type
+	 * @param bundle   the future property bundle
+	 * @param executor the executor on which descriptors are extracted and the bundle validated
+	 * @return a future validated config, which fails with an
+	 *         {@link InvalidConfigException} if the bundle is not valid
+	 */
+	public <T> ListenableFuture<T> bindAsync(final Class<T> type, ListenableFuture<? extends Properties> bundle,
+			Executor executor) {
 		checkNotNull(type, "type is required");
 		checkNotNull(bundle, "bundle is required");
+		checkNotNull(executor, "executor is required");
 
-		final Map<Method, PropertyDescription> properties = extractDescriptors(type);
+		ListenableFutureTask<Map<Method, PropertyDescription>> descriptors = ListenableFutureTask.create(
+				new Callable<Map<Method, PropertyDescription>>() {
 
-		final Method getDescriptorsMethod;
-		try {
-			getDescriptorsMethod = ConfigProxy.class
-					.getMethod("getDescriptors");
-		} catch (Exception e) {
-			throw new RuntimeException("Failed to get descriptor method", e);
+					@Override
+					public Map<Method, PropertyDescription> call() {
+						return extractDescriptors(type);
+					}
+				});
+		executor.execute(descriptors);
+
+		List<ListenableFuture<?>> inputs = ImmutableList.<ListenableFuture<?>> of(descriptors, bundle);
+		return Futures.transform(Futures.<Object> allAsList(inputs), new Function<List<Object>, T>() {
+
+			@Override
+			public T apply(List<Object> inputs) {
+				// the descriptors are cached by the extraction task
+				PropertySource source = PropertySources.fromProperties((Properties) inputs.get(1));
+				fetchAll(extractDescriptors(type).values(), source);
+				return bind(type, source);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Binds and validates several interfaces concurrently against a future
+	 * bundle, reporting the validation errors of all interfaces together
+	 *
+	 * @param bundle   the future property bundle
+	 * @param executor the executor on which interfaces are bound
+	 * @param types    the interfaces to bind
+	 * @return a future map of each interface to its validated config, which
+	 *         fails with a single {@link InvalidConfigException} if any
+	 *         interface is invalid
+	 */
+	public ListenableFuture<ClassToInstanceMap<Object>> bindAllAsync(ListenableFuture<? extends Properties> bundle,
+			Executor executor, final Class<?>... types) {
+		checkNotNull(bundle, "bundle is required");
+		checkNotNull(executor, "executor is required");
+		checkNotNull(types, "types is required");
+
+		final List<ListenableFuture<?>> bindings = new ArrayList<ListenableFuture<?>>();
+		for (Class<?> type : types) {
+			bindings.add(bindAsync(type, bundle, executor));
 		}
+
+		return Futures.transform(Futures.successfulAsList(bindings),
+				new AsyncFunction<List<Object>, ClassToInstanceMap<Object>>() {
+
+					@Override
+					public ListenableFuture<ClassToInstanceMap<Object>> apply(List<Object> configs) {
+						ImmutableClassToInstanceMap.Builder<Object> result = ImmutableClassToInstanceMap.builder();
+						StringBuilder errors = new StringBuilder();
+						for (int i = 0; i < types.length; i++) {
+							try {
+								putInstance(result, types[i], Uninterruptibles.getUninterruptibly(bindings.get(i)));
+							} catch (ExecutionException e) {
+								if (!(e.getCause() instanceof InvalidConfigException)) {
+									return Futures.immediateFailedFuture(e.getCause());
+								}
+								errors.append(String.format("%s%s : %s", errors.length() > 0 ? ", " : "",
+										types[i].getName(), e.getCause().getMessage()));
+							}
+						}
+						if (errors.length() > 0) {
+							return Futures.immediateFailedFuture(new InvalidConfigException(
+									"Invalid configuration : " + errors));
+						}
+						return Futures.<ClassToInstanceMap<Object>> immediateFuture(result.build());
+					}
+				});
+	}
+
+	private static <T> void putInstance(ImmutableClassToInstanceMap.Builder<Object> builder, Class<T> type,
+			Object instance) {
+		builder.put(type, type.cast(instance));
+	}
+
+	/**
+	 * Creates an overlay which overrides a small number of properties of
+	 * bound configs, either for the duration of a task on the current thread
+	 * or through an explicit view of a config
+	 *
+	 * @param overrides raw property values keyed by property name
+	 * @return a new overlay
+	 */
+	public ConfigOverlay overlay(Map<String, String> overrides) {
+		checkNotNull(overrides, "overrides is required");
+		return new ConfigOverlay(this, overrides);
+	}
+
+	/**
+	 * Creates a config for one or more interfaces which is loaded from a
+	 * property file and can be reloaded incrementally
+	 *
+	 * @param types the interfaces to bind
+	 * @return a new config, which must be loaded before use
+	 */
+	public ReloadableConfig reloadable(Class<?>... types) {
+		checkNotNull(types, "types is required");
+		return new ReloadableConfig(this, types);
+	}
+
+	/**
+	 * Discards all decrypted secret values so that they are decrypted again
+	 * on their next use, call this when a key is replaced without changing
+	 * its id. Values already converted by a {@link ConfigOverlay} are not
+	 * affected.
+	 */
+	public void invalidateSecrets() {
+		if (secrets != null) {
+			secrets.invalidateAll();
+		}
+	}
+
+	interface ValueFetcher {
+
+		public Object fetch(Method method, PropertyDescription desc);
+	}
+
+	/**
+	 * Creates a config proxy
+	 *
+	 * @param type       the interface to implement
+	 * @param properties the descriptors of the interface
+	 * @param fetcher    supplies the value of each property
+	 * @param scoped     true if values in the thread's current {@link ConfigOverlay} take precedence
+	 * @return a new proxy
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T createProxy(Class<T> type, final Map<Method, PropertyDescription> properties,
+			final ValueFetcher fetcher, final boolean scoped) {
 		return (T) Proxy.newProxyInstance(getClass().getClassLoader(),
 				new Class[] { type, ConfigProxy.class },
 				new InvocationHandler() {
 
 					public Object invoke(Object proxy, Method method,
 							Object[] args) throws Throwable {
-						if (method.equals(getDescriptorsMethod)) {
+						if (method.equals(GET_DESCRIPTORS_METHOD)) {
 							return properties;
 						}
 						PropertyDescription desc = properties.get(method);
 						Preconditions.checkState(desc != null,
 								"cannot find descriptor for method %s ", method);
 
-						return fetchPropertyValue(desc, bundle);
+						if (scoped) {
+							// only reads the thread local while some overlay is active
+							ConfigOverlay overlay = ConfigOverlay.current();
+							if (overlay != null && overlay.isOverridden(desc)) {
+								return overlay.getValue(desc);
+							}
+						}
+						return fetcher.fetch(method, desc);
 					}
 
 				});
 	}
 
+	/**
+	 * Returns the property descriptors of a config interface, descriptors are
+	 * built once per interface and cached
+	 *
+	 * @param type
+	 * @return an unmodifiable map of methods to property descriptors
+	 */
 	public <T> Map<Method, PropertyDescription> extractDescriptors(Class<T> type) {
+		Map<Method, PropertyDescription> cached = descriptorCache.get(type);
+		if (cached != null) {
+			return cached;
+		}
 		final Map<Method, PropertyDescription> properties = new HashMap<Method, PropertyDescription>();
 		visitAllMethodsIncludingParents(type,
 				new MethodVisitor() {
@@ -170,26 +585,68 @@ public class ConfigBinder {
 						properties.put(m.getRawMember(), createDescriptionFromMethod(m));
 					}
 				});
-		return properties;
+		cached = descriptorCache.putIfAbsent(type, Collections.unmodifiableMap(properties));
+		return cached != null ? cached : descriptorCache.get(type);
 	}
 
 	/**
 	 * Returns the property value in a given form
 	 *
 	 * @param desc
-	 * @param bundle
+	 * @param source
 	 * @return
 	 */
 	private Object fetchPropertyValue(final PropertyDescription desc,
-			Properties bundle) throws InvalidConfigException {
+			PropertySource source) throws InvalidConfigException {
+		return convertPropertyValue(desc, fetchRawValue(desc, source));
+	}
 
-		final String property = desc.getProperty();
-		String value = bundle.getProperty(property, desc.getDefaultValue());
+	/**
+	 * Returns the raw property value, or its default
+	 *
+	 * @param desc
+	 * @param source
+	 * @return the raw value, null if an optional property is not set
+	 * @throws InvalidConfigException if a required property is not set
+	 */
+	private String fetchRawValue(PropertyDescription desc, PropertySource source)
+			throws InvalidConfigException {
+		String value = PropertySources.getProperty(source, desc);
+		if (value == null) {
+			value = desc.getDefaultValue();
+		}
 		if (value == null && desc.isRequired()) {
 			throw new InvalidConfigException("Property "
 					+ desc.getProperty() + " is required but not set");
 		}
+		return value;
+	}
+
+	/**
+	 * Converts a raw property value to the type of a property and checks its
+	 * constraints, secret values are decrypted first
+	 *
+	 * @param desc
+	 * @param value the raw value, may be null
+	 * @return the converted value
+	 */
+	Object convertPropertyValue(final PropertyDescription desc, String value) {
+		if (desc.isSecret() && value != null) {
+			if (secrets == null) {
+				throw new InvalidConfigException("Property " + desc.getProperty()
+						+ " is secret but the binder has no key provider");
+			}
+			value = secrets.decrypt(desc, value);
+		}
+		Object converted = convertRawValue(desc, value);
+		for (PropertyConstraint constraint : desc.getConstraints()) {
+			constraint.check(desc, converted);
+		}
+		return converted;
+	}
 
+	private Object convertRawValue(final PropertyDescription desc, String value) {
+		final String property = desc.getProperty();
 		if (desc.isMultiValued()) {
 			List<Object> values = new ArrayList<Object>();
 
@@ -209,12 +666,47 @@ public class ConfigBinder {
 		}
 	}
 
+	/**
+	 * Copies a converted value so that callers cannot modify a cached value
+	 *
+	 * @param desc
+	 * @param value a value returned by {@link #convertPropertyValue(PropertyDescription, String)}
+	 * @return the value itself for single valued properties, otherwise a new container
+	 */
+	Object copyPropertyValue(PropertyDescription desc, Object value) {
+		if (!desc.isMultiValued() || isCompactSetProperty(desc)) {
+			return value;
+		} else if (value.getClass().isArray()) {
+			int length = Array.getLength(value);
+			Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+			System.arraycopy(value, 0, copy, 0, length);
+			return copy;
+		} else {
+			return createMultiValuedContainer(desc, new ArrayList<Object>((Collection<?>) value));
+		}
+	}
+
+	private static boolean isCompactSetProperty(PropertyDescription desc) {
+		return desc.isMultiValued() && desc.getType() == Set.class && desc.getComponentType() == String.class;
+	}
+
 	private Object createMultiValuedContainer(PropertyDescription desc, List<Object> values) {
 
 		if (desc.getType().isArray()) {
-			return values.toArray((Object[]) Array.newInstance(desc
-					.getType().getComponentType(), values.size()));
+			Object array = Array.newInstance(desc.getType().getComponentType(), values.size());
+			for (int i = 0; i < values.size(); i++) {
+				Array.set(array, i, values.get(i));
+			}
+			return array;
 		} else if (Set.class.isAssignableFrom(desc.getType())) {
+			if (isCompactSetProperty(desc) && values.size() >= COMPACT_SET_THRESHOLD) {
+				@SuppressWarnings({ "unchecked", "rawtypes" })
+				Collection<String> strings = (Collection) values;
+				return CompactStringSet.copyOf(strings);
+			} else if (isCompactSetProperty(desc)) {
+				// read-only whatever the size, as large sets are
+				return Collections.unmodifiableSet(Sets.newHashSet(values));
+			}
 			return Sets.newHashSet(values);
 		} else if (List.class.isAssignableFrom(desc.getType())) {
 			return values;
@@ -223,6 +715,19 @@ public class ConfigBinder {
 		}
 	}
 
+	/**
+	 * @param array an array of objects or primitives
+	 * @return the (boxed) elements of the array
+	 */
+	static List<Object> arrayToList(Object array) {
+		int length = Array.getLength(array);
+		List<Object> list = new ArrayList<Object>(length);
+		for (int i = 0; i < length; i++) {
+			list.add(Array.get(array, i));
+		}
+		return list;
+	}
+
 	@SuppressWarnings("unchecked")
 	public Object extractBaseValue(String property, Class<?> targetType,
 			String input) {
@@ -278,11 +783,26 @@ public class ConfigBinder {
 	 */
 	public <T> T bindAndValidate(Class<T> type, final Properties bundle)
 			throws InvalidConfigException {
-		checkNotNull(type, "type is required");
 		checkNotNull(bundle, "bundle is required");
+		return bindAndValidate(type, PropertySources.fromProperties(bundle));
+	}
 
-		validate(type, bundle);
-		return bind(type, bundle);
+	/**
+	 * Create a dynamic proxy based on an interface describing a property
+	 * source, validating that each property can be read without exception
+	 *
+	 * @param type
+	 * @param source
+	 * @return
+	 * @throws InvalidConfigException
+	 */
+	public <T> T bindAndValidate(Class<T> type, final PropertySource source)
+			throws InvalidConfigException {
+		checkNotNull(type, "type is required");
+		checkNotNull(source, "source is required");
+
+		validate(type, source);
+		return bind(type, source);
 	}
 
 	/**
@@ -292,12 +812,53 @@ public class ConfigBinder {
 	 * @param bundle
 	 */
 	public <T> void validate(Class<T> type, final Properties bundle) {
-		Map<Method, PropertyDescription> descs = extractDescriptors(type);
+		validate(type, PropertySources.fromProperties(bundle));
+	}
+
+	/**
+	 * Validates a property source against a specified interface
+	 *
+	 * @param type
+	 * @param source
+	 */
+	public <T> void validate(Class<T> type, final PropertySource source) {
+		fetchAll(extractDescriptors(type).values(), source);
+	}
 
+	/**
+	 * Fetches the values of a set of properties, reporting all invalid
+	 * properties (including properties with ambiguous values, or which only
+	 * differ in case or separators, in a {@link RelaxedPropertySource}, even
+	 * when wrapped) together
+	 *
+	 * @param descs
+	 * @param source
+	 * @return the value of each property
+	 * @throws InvalidConfigException if any property is invalid
+	 */
+	Map<PropertyDescription, Object> fetchAll(Collection<PropertyDescription> descs, PropertySource source)
+			throws InvalidConfigException {
+		Map<PropertyDescription, Object> values = new LinkedHashMap<PropertyDescription, Object>();
 		Map<PropertyDescription, InvalidConfigException> errors = new LinkedHashMap<PropertyDescription, InvalidConfigException>();
-		for (PropertyDescription propDesc : descs.values()) {
+		// properties which only differ in case or separators read the same relaxed value
+		Map<String, PropertyDescription> relaxedKeys = PropertySources.isRelaxed(source)
+				? new HashMap<String, PropertyDescription>() : null;
+		for (PropertyDescription propDesc : descs) {
 			try {
-				fetchPropertyValue(propDesc, bundle);
+				if (relaxedKeys != null) {
+					PropertyDescription other = relaxedKeys.put(propDesc.getRelaxedKey(), propDesc);
+					if (other != null && !other.getProperty().equals(propDesc.getProperty())) {
+						throw new InvalidConfigException("Property " + propDesc.getProperty() + " and property "
+								+ other.getProperty() + " only differ in case or separators");
+					}
+				}
+				List<String> ambiguous = PropertySources.getAmbiguousKeys(source, propDesc);
+				if (!ambiguous.isEmpty()) {
+					throw new InvalidConfigException("Property " + propDesc.getProperty()
+							+ " is ambiguous, it is set with different values by "
+							+ Joiner.on(", ").join(ambiguous));
+				}
+				values.put(propDesc, fetchPropertyValue(propDesc, source));
 			} catch (InvalidConfigException ex) {
 				errors.put(propDesc, ex);
 			}
@@ -312,6 +873,7 @@ public class ConfigBinder {
 			}
 			throw new InvalidConfigException(errorMsg.toString());
 		}
+		return values;
 	}
 
 	/**
@@ -352,6 +914,12 @@ public class ConfigBinder {
 			if (pd.isMultiValued()) {
 				flags.add("multi-valued");
 			}
+			if (pd.isSecret()) {
+				flags.add("secret");
+			}
+			for (PropertyConstraint constraint : pd.getConstraints()) {
+				flags.add(constraint.toString());
+			}
 			out.println(pd.getProperty()
 					+ " : "
 					+ pd.getDescription()
@@ -0,0 +1,60 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.base.Charsets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Properties;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Loads a configuration file format into a property bundle which can be
+ * passed to a {@link ConfigBinder}.
+ *
+ * Structured formats are tokenized as a stream and written as flattened
+ * <code>a.b.c</code> style keys directly into the target bundle without
+ * building an intermediate document tree. Arrays of scalar values are written
+ * in the comma-separated form used by multi-valued properties, arrays of
+ * objects are addressed by index (<code>servers.0.host</code>).
+ *
+ * Syntax errors are reported as {@link InvalidConfigException}s.
+ */
+public abstract class ConfigLoader {
+
+	/**
+	 * Loads UTF-8 encoded content into a bundle
+	 *
+	 * @param in     the content to load
+	 * @param target the bundle to add properties to
+	 * @throws IOException if the stream cannot be read
+	 */
+	public void load(InputStream in, Properties target) throws IOException {
+		checkNotNull(in, "in is required");
+		load(new InputStreamReader(in, Charsets.UTF_8), target);
+	}
+
+	/**
+	 * Loads content into a bundle
+	 *
+	 * @param reader the content to load
+	 * @param target the bundle to add properties to
+	 * @throws IOException if the reader cannot be read
+	 */
+	public abstract void load(Reader reader, Properties target) throws IOException;
+
+	/**
+	 * Loads content into a new bundle
+	 *
+	 * @param reader the content to load
+	 * @return a bundle containing the flattened properties
+	 * @throws IOException if the reader cannot be read
+	 */
+	public Properties load(Reader reader) throws IOException {
+		Properties p = new Properties();
+		load(reader, p);
+		return p;
+	}
+}
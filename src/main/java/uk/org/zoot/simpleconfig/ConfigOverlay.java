@@ -0,0 +1,167 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A small set of property overrides which can be applied to bound configs
+ * without copying or re-binding the underlying bundle.
+ *
+ * An overlay is either activated for the current thread for the duration of
+ * a task with {@link #run(Runnable)} or {@link #call(Callable)}, in which case
+ * every config proxy read on that thread sees the overridden values, or
+ * applied to a single config with {@link #view(Object)}. When no overlay is
+ * active on any thread, reads go straight to the underlying source after a
+ * single volatile read.
+ *
+ * Overridden values are converted once per overlay on first use and cached.
+ * Overlays do not nest, an overlay activated inside another replaces it for
+ * the duration of the inner task.
+ *
+ * Created with {@link ConfigBinder#overlay(Map)}.
+ */
+public final class ConfigOverlay {
+
+	private static final ThreadLocal<ConfigOverlay> CURRENT = new ThreadLocal<ConfigOverlay>();
+	/** the number of overlays active on any thread, so that reads skip the thread local when none are */
+	private static final AtomicInteger ACTIVE = new AtomicInteger();
+	private static final Object NULL_VALUE = new Object();
+
+	private final ConfigBinder binder;
+	private final Map<String, String> overrides;
+	private final ConcurrentMap<PropertyDescription, Object> converted = new ConcurrentHashMap<PropertyDescription, Object>();
+
+	ConfigOverlay(ConfigBinder binder, Map<String, String> overrides) {
+		this.binder = binder;
+		this.overrides = ImmutableMap.copyOf(overrides);
+	}
+
+	/**
+	 * @return the overlay active on the current thread, or null
+	 */
+	public static ConfigOverlay current() {
+		return ACTIVE.get() == 0 ? null : CURRENT.get();
+	}
+
+	/**
+	 * Runs a task with this overlay active on the current thread
+	 *
+	 * @param task
+	 */
+	public void run(Runnable task) {
+		checkNotNull(task, "task is required");
+		ConfigOverlay previous = activate();
+		try {
+			task.run();
+		} finally {
+			restore(previous);
+		}
+	}
+
+	/**
+	 * Calls a task with this overlay active on the current thread
+	 *
+	 * @param task
+	 * @return the result of the task
+	 * @throws Exception if the task fails
+	 */
+	public <V> V call(Callable<V> task) throws Exception {
+		checkNotNull(task, "task is required");
+		ConfigOverlay previous = activate();
+		try {
+			return task.call();
+		} finally {
+			restore(previous);
+		}
+	}
+
+	private ConfigOverlay activate() {
+		ACTIVE.incrementAndGet();
+		ConfigOverlay previous = CURRENT.get();
+		CURRENT.set(this);
+		return previous;
+	}
+
+	private static void restore(ConfigOverlay previous) {
+		if (previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+		ACTIVE.decrementAndGet();
+	}
+
+	/**
+	 * Creates a view of a bound config with this overlay applied, regardless
+	 * of the overlay active on the calling thread
+	 *
+	 * @param config a config created by a {@link ConfigBinder}
+	 * @return a config of the same interface
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T view(final T config) {
+		checkNotNull(config, "config is required");
+		checkArgument(config instanceof ConfigProxy, "%s is not a bound config", config);
+
+		Class<?> type = null;
+		for (Class<?> iface : config.getClass().getInterfaces()) {
+			if (iface != ConfigProxy.class) {
+				type = iface;
+			}
+		}
+		return (T) binder.createProxy(type, ((ConfigProxy) config).getDescriptors(), new ConfigBinder.ValueFetcher() {
+
+			@Override
+			public Object fetch(Method method, PropertyDescription desc) {
+				if (isOverridden(desc)) {
+					return getValue(desc);
+				}
+				try {
+					return method.invoke(config);
+				} catch (InvocationTargetException e) {
+					throw Throwables.propagate(e.getCause());
+				} catch (IllegalAccessException e) {
+					throw Throwables.propagate(e);
+				}
+			}
+		}, false);
+	}
+
+	/**
+	 * @param desc
+	 * @return true if this overlay overrides the property
+	 */
+	boolean isOverridden(PropertyDescription desc) {
+		return overrides.containsKey(desc.getProperty());
+	}
+
+	/**
+	 * Returns the converted value of an overridden property, converting it on
+	 * first use
+	 *
+	 * @param desc an overridden property
+	 * @return the value
+	 * @throws InvalidConfigException if the override is not valid for the property
+	 */
+	Object getValue(PropertyDescription desc) throws InvalidConfigException {
+		Object value = converted.get(desc);
+		if (value == null) {
+			value = binder.convertPropertyValue(desc, overrides.get(desc.getProperty()));
+			converted.putIfAbsent(desc, value == null ? NULL_VALUE : value);
+		} else if (value == NULL_VALUE) {
+			return null;
+		}
+		return binder.copyPropertyValue(desc, value);
+	}
+}
@@ -61,5 +61,17 @@ public @interface ConfigProperty {
          * @return
          */
         String defaultValue() default NODEFAULT;
+
+        /**
+         * Is this property a secret? (defaults to false)
+         *
+         * Secret values (including any default) are stored encrypted, see
+         * {@link EncryptedValues}, and are decrypted by the {@link KeyProvider}
+         * of the binder. Secret values are never shown in property descriptions
+         * or error messages. Only String properties may be secret.
+         *
+         * @return
+         */
+        boolean secret() default false;
     }
 
@@ -0,0 +1,323 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * An immutable set of validated, converted property values for one or more
+ * configuration interfaces, which can be stored in a compact binary form and
+ * bound with {@link ConfigBinder#bind(Class, ConfigSnapshot)}
+ *
+ * @see ConfigBinder#loadSnapshot(File, ByteSource, ConfigLoader, Class[])
+ */
+public final class ConfigSnapshot {
+
+	private static final int MAGIC = 0x53544353;
+	private static final int FORMAT_VERSION = 2;
+	private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+	private static final int CHECKSUM_LENGTH = HASH_FUNCTION.bits() / 8;
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte INT = 2;
+	private static final byte LONG = 3;
+	private static final byte FLOAT = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte BOOLEAN = 6;
+	private static final byte ENUM = 7;
+	private static final byte LIST = 8;
+
+	private final HashCode hash;
+	private final Map<String, Map<String, Object>> values;
+
+	/**
+	 * @param hash   the hash of the source and descriptors the values were created from
+	 * @param values converted values keyed by interface name then method name,
+	 *               multi-valued properties are held as lists
+	 */
+	ConfigSnapshot(HashCode hash, Map<String, Map<String, Object>> values) {
+		this.hash = hash;
+		this.values = values;
+	}
+
+	/**
+	 * @param type a configuration interface
+	 * @return true if this snapshot contains values for the interface
+	 */
+	public boolean contains(Class<?> type) {
+		return values.containsKey(type.getName());
+	}
+
+	Map<String, Object> getValues(Class<?> type) {
+		return values.get(type.getName());
+	}
+
+	/**
+	 * Computes the key of a snapshot from the source content, the loader used
+	 * to parse it and the descriptors (including constraints) of each interface
+	 */
+	static HashCode hash(ByteSource source, ConfigLoader loader,
+			Map<Class<?>, Map<Method, PropertyDescription>> descriptors) throws IOException {
+		Hasher hasher = HASH_FUNCTION.newHasher();
+		hasher.putInt(FORMAT_VERSION);
+		hasher.putBytes(source.hash(HASH_FUNCTION).asBytes());
+		putString(hasher, loader.getClass().getName());
+		for (Map.Entry<Class<?>, Map<Method, PropertyDescription>> entry : descriptors.entrySet()) {
+			putString(hasher, entry.getKey().getName());
+			for (Map.Entry<String, PropertyDescription> desc : byMethodName(entry.getValue()).entrySet()) {
+				PropertyDescription pd = desc.getValue();
+				putString(hasher, desc.getKey());
+				putString(hasher, pd.getProperty());
+				putString(hasher, pd.getType().getName());
+				putString(hasher, pd.getComponentType().getName());
+				hasher.putBoolean(pd.isRequired());
+				hasher.putBoolean(pd.isSecret());
+				putString(hasher, pd.getDefaultValue());
+				// a snapshot is bound without checking constraints, so they must match
+				hasher.putInt(pd.getConstraints().size());
+				for (PropertyConstraint constraint : pd.getConstraints()) {
+					putString(hasher, constraint.toString());
+				}
+				if (pd.getComponentType().isEnum()) {
+					for (Object constant : pd.getComponentType().getEnumConstants()) {
+						putString(hasher, ((Enum<?>) constant).name());
+					}
+				}
+			}
+		}
+		return hasher.hash();
+	}
+
+	private static void putString(Hasher hasher, String value) {
+		if (value == null) {
+			hasher.putInt(-1);
+		} else {
+			hasher.putInt(value.length());
+			hasher.putString(value, Charsets.UTF_8);
+		}
+	}
+
+	private static SortedMap<String, PropertyDescription> byMethodName(Map<Method, PropertyDescription> descs) {
+		SortedMap<String, PropertyDescription> sorted = new TreeMap<String, PropertyDescription>();
+		for (Map.Entry<Method, PropertyDescription> entry : descs.entrySet()) {
+			sorted.put(entry.getKey().getName(), entry.getValue());
+		}
+		return sorted;
+	}
+
+	/**
+	 * Reads a snapshot file if it exists and was created with the given hash
+	 *
+	 * @return the snapshot, or null if the file is missing, unreadable or stale
+	 */
+	static ConfigSnapshot readIfMatches(File file, HashCode hash,
+			Map<Class<?>, Map<Method, PropertyDescription>> descriptors) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			byte[] bytes = Files.toByteArray(file);
+			// the values are trusted without validation, so the whole file must be intact
+			int length = bytes.length - CHECKSUM_LENGTH;
+			if (length < 0 || !Arrays.equals(HASH_FUNCTION.hashBytes(bytes, 0, length).asBytes(),
+					Arrays.copyOfRange(bytes, length, bytes.length))) {
+				return null;
+			}
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length));
+			ConfigSnapshot snapshot = read(in, hash, descriptors);
+			return snapshot != null && in.available() == 0 ? snapshot : null;
+		} catch (IOException e) {
+			return null;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private static ConfigSnapshot read(DataInputStream in, HashCode expectedHash,
+			Map<Class<?>, Map<Method, PropertyDescription>> descriptors) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+			return null;
+		}
+		byte[] hashBytes = new byte[in.readUnsignedByte()];
+		in.readFully(hashBytes);
+		if (!Arrays.equals(hashBytes, expectedHash.asBytes())) {
+			return null;
+		}
+
+		Map<String, Map<Method, PropertyDescription>> typesByName = new HashMap<String, Map<Method, PropertyDescription>>();
+		for (Map.Entry<Class<?>, Map<Method, PropertyDescription>> entry : descriptors.entrySet()) {
+			typesByName.put(entry.getKey().getName(), entry.getValue());
+		}
+
+		Map<String, Map<String, Object>> values = new LinkedHashMap<String, Map<String, Object>>();
+		int typeCount = in.readInt();
+		for (int t = 0; t < typeCount; t++) {
+			String typeName = readString(in);
+			Map<Method, PropertyDescription> descs = typesByName.get(typeName);
+			if (descs == null) {
+				return null;
+			}
+			SortedMap<String, PropertyDescription> byName = byMethodName(descs);
+			Map<String, Object> typeValues = new HashMap<String, Object>();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String methodName = readString(in);
+				PropertyDescription desc = byName.get(methodName);
+				if (desc == null) {
+					return null;
+				}
+				typeValues.put(methodName, readValue(in, desc.getComponentType()));
+			}
+			values.put(typeName, typeValues);
+		}
+		return new ConfigSnapshot(expectedHash, values);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object readValue(DataInputStream in, Class<?> componentType) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case STRING:
+			return readString(in);
+		case INT:
+			return in.readInt();
+		case LONG:
+			return in.readLong();
+		case FLOAT:
+			return in.readFloat();
+		case DOUBLE:
+			return in.readDouble();
+		case BOOLEAN:
+			return in.readBoolean();
+		case ENUM:
+			return Enum.valueOf((Class<? extends Enum>) componentType, readString(in));
+		case LIST:
+			int size = checkLength(in, in.readInt());
+			List<Object> list = new ArrayList<Object>(size);
+			for (int i = 0; i < size; i++) {
+				list.add(readValue(in, componentType));
+			}
+			return Collections.unmodifiableList(list);
+		default:
+			throw new IOException("Unknown value tag " + tag);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[checkLength(in, in.readInt())];
+		in.readFully(bytes);
+		return new String(bytes, Charsets.UTF_8);
+	}
+
+	/**
+	 * Guards against allocating from corrupt lengths, every element occupies
+	 * at least one of the remaining bytes
+	 */
+	private static int checkLength(DataInputStream in, int length) throws IOException {
+		if (length < 0 || length > in.available()) {
+			throw new IOException("Corrupt snapshot, invalid length " + length);
+		}
+		return length;
+	}
+
+	/**
+	 * Writes this snapshot to a file, replacing any existing file, failures are
+	 * ignored as the snapshot can always be recreated from its source
+	 */
+	void writeQuietly(File file) {
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			write(new DataOutputStream(bytes));
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
+			try {
+				bytes.writeTo(out);
+				// a checksum of the content, verified before the snapshot is read
+				out.write(HASH_FUNCTION.hashBytes(bytes.toByteArray()).asBytes());
+			} finally {
+				out.close();
+			}
+			Files.move(tmp, file);
+		} catch (IOException e) {
+			tmp.delete();
+		}
+	}
+
+	private void write(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		byte[] hashBytes = hash.asBytes();
+		out.writeByte(hashBytes.length);
+		out.write(hashBytes);
+		out.writeInt(values.size());
+		for (Map.Entry<String, Map<String, Object>> type : values.entrySet()) {
+			writeString(out, type.getKey());
+			out.writeInt(type.getValue().size());
+			for (Map.Entry<String, Object> value : type.getValue().entrySet()) {
+				writeString(out, value.getKey());
+				writeValue(out, value.getValue());
+			}
+		}
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof String) {
+			out.writeByte(STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(INT);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Enum) {
+			out.writeByte(ENUM);
+			writeString(out, ((Enum<?>) value).name());
+		} else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			out.writeByte(LIST);
+			out.writeInt(list.size());
+			for (Object element : list) {
+				writeValue(out, element);
+			}
+		} else {
+			throw new IllegalStateException("Cannot write value of type " + value.getClass());
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(Charsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
@@ -0,0 +1,34 @@
+package uk.org.zoot.simpleconfig;
+
+import java.util.List;
+
+/**
+ * A property source which can look up a property by its descriptor, such as
+ * a {@link RelaxedPropertySource}, and report values which are ambiguous.
+ *
+ * Sources which wrap another source implement this interface by delegating
+ * through {@link PropertySources#getProperty(PropertySource, PropertyDescription)},
+ * {@link PropertySources#getAmbiguousKeys(PropertySource, PropertyDescription)}
+ * and {@link PropertySources#isRelaxed(PropertySource)},
+ * so that lookups and validation behave the same once a source is wrapped.
+ */
+interface DescriptorPropertySource extends PropertySource {
+
+    /**
+     * @param desc the property
+     * @return the raw value of the property, or null if it is not set
+     */
+    String getProperty(PropertyDescription desc);
+
+    /**
+     * @param desc the property
+     * @return the keys which set different values for the property, or an
+     *         empty list if the property is not ambiguous
+     */
+    List<String> getAmbiguousKeys(PropertyDescription desc);
+
+    /**
+     * @return true if properties are matched regardless of case and separators
+     */
+    boolean isRelaxed();
+}
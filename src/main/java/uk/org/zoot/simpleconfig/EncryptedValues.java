@@ -0,0 +1,175 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Encrypts and decrypts the values of secret properties.
+ *
+ * An encrypted value has the form <code>ENC(keyId:data)</code>, where data is
+ * the base 64 encoded IV, AES/CBC cipher text and HMAC-SHA256 of the IV and
+ * cipher text, and keyId identifies the key to a {@link KeyProvider}. The
+ * cipher and MAC keys are derived from the provided key, and the MAC is
+ * checked before the cipher text is decrypted. Values can be encrypted with
+ * {@link #encrypt(String, SecretKey, String)}.
+ *
+ * Each distinct encrypted value is decrypted once and the plain text cached,
+ * as the cache is keyed on the encrypted value, a reloaded source only
+ * decrypts the values which have changed. The cache must be invalidated when a
+ * key is replaced without changing its id.
+ */
+public final class EncryptedValues {
+
+	private static final String PREFIX = "ENC(";
+	private static final String SUFFIX = ")";
+	private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+	private static final int IV_LENGTH = 16;
+	private static final int MAC_LENGTH = 32;
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private final KeyProvider keyProvider;
+	private final Cache<String, String> decrypted = CacheBuilder.newBuilder().maximumSize(1000).build();
+
+	EncryptedValues(KeyProvider keyProvider) {
+		this.keyProvider = keyProvider;
+	}
+
+	/**
+	 * Encrypts a value for use as the value of a secret property
+	 *
+	 * @param keyId the id of the key, which must not contain ':' or ')'
+	 * @param key   an AES key
+	 * @param value the value to encrypt
+	 * @return the encrypted value
+	 * @throws GeneralSecurityException if the value cannot be encrypted with the key
+	 */
+	public static String encrypt(String keyId, SecretKey key, String value) throws GeneralSecurityException {
+		checkNotNull(keyId, "keyId is required");
+		checkArgument(keyId.indexOf(':') < 0 && keyId.indexOf(')') < 0, "keyId must not contain ':' or ')'");
+		checkNotNull(key, "key is required");
+		checkNotNull(value, "value is required");
+
+		byte[] iv = new byte[IV_LENGTH];
+		RANDOM.nextBytes(iv);
+		Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+		cipher.init(Cipher.ENCRYPT_MODE, deriveKey(key, "encryption", "AES"), new IvParameterSpec(iv));
+		byte[] cipherText = cipher.doFinal(value.getBytes(Charsets.UTF_8));
+
+		int length = IV_LENGTH + cipherText.length;
+		byte[] data = Arrays.copyOf(iv, length + MAC_LENGTH);
+		System.arraycopy(cipherText, 0, data, IV_LENGTH, cipherText.length);
+		System.arraycopy(mac(key, data, length), 0, data, length, MAC_LENGTH);
+		return PREFIX + keyId + ":" + BaseEncoding.base64().encode(data) + SUFFIX;
+	}
+
+	/**
+	 * Derives a key for one purpose from a provided key, so that the cipher
+	 * and the MAC never share a key
+	 */
+	private static SecretKey deriveKey(SecretKey key, String purpose, String algorithm)
+			throws GeneralSecurityException {
+		byte[] encoded = key.getEncoded();
+		if (encoded == null || encoded.length > MAC_LENGTH) {
+			throw new InvalidKeyException("Key must be an AES key of at most 256 bits");
+		}
+		Mac mac = Mac.getInstance(MAC_ALGORITHM);
+		mac.init(new SecretKeySpec(encoded, MAC_ALGORITHM));
+		byte[] derived = mac.doFinal(purpose.getBytes(Charsets.UTF_8));
+		return new SecretKeySpec(derived, 0, encoded.length, algorithm);
+	}
+
+	private static byte[] mac(SecretKey key, byte[] data, int length) throws GeneralSecurityException {
+		Mac mac = Mac.getInstance(MAC_ALGORITHM);
+		mac.init(deriveKey(key, "authentication", MAC_ALGORITHM));
+		mac.update(data, 0, length);
+		return mac.doFinal();
+	}
+
+	/**
+	 * @param value a raw property value
+	 * @return true if the value has the form of an encrypted value
+	 */
+	public static boolean isEncrypted(String value) {
+		return value != null && value.startsWith(PREFIX) && value.endsWith(SUFFIX) && value.indexOf(':') > 0;
+	}
+
+	/**
+	 * Returns the plain text of a secret property value, decrypting it on first use
+	 *
+	 * @param desc  a secret property
+	 * @param value the encrypted value
+	 * @return the plain text
+	 * @throws InvalidConfigException if the value cannot be decrypted
+	 */
+	String decrypt(PropertyDescription desc, String value) throws InvalidConfigException {
+		String plainText = decrypted.getIfPresent(value);
+		if (plainText == null) {
+			plainText = decryptUncached(desc, value);
+			decrypted.put(value, plainText);
+		}
+		return plainText;
+	}
+
+	private String decryptUncached(PropertyDescription desc, String value) {
+		if (!isEncrypted(value)) {
+			throw new InvalidConfigException("Property " + desc.getProperty()
+					+ " is secret but its value is not encrypted");
+		}
+		int separator = value.indexOf(':');
+		String keyId = value.substring(PREFIX.length(), separator);
+		SecretKey key = keyProvider.getKey(keyId);
+		if (key == null) {
+			throw new InvalidConfigException("Property " + desc.getProperty()
+					+ " is encrypted with unknown key " + keyId);
+		}
+
+		byte[] data;
+		try {
+			data = BaseEncoding.base64().decode(value.substring(separator + 1, value.length() - SUFFIX.length()));
+		} catch (IllegalArgumentException e) {
+			throw new InvalidConfigException("Property " + desc.getProperty() + " has a malformed encrypted value");
+		}
+		if (data.length <= IV_LENGTH + MAC_LENGTH) {
+			throw new InvalidConfigException("Property " + desc.getProperty() + " has a malformed encrypted value");
+		}
+		int length = data.length - MAC_LENGTH;
+		try {
+			// encrypt-then-MAC, nothing is decrypted unless the MAC matches
+			if (!MessageDigest.isEqual(mac(key, data, length), Arrays.copyOfRange(data, length, data.length))) {
+				throw new InvalidConfigException("Property " + desc.getProperty()
+						+ " cannot be decrypted with key " + keyId);
+			}
+			Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+			cipher.init(Cipher.DECRYPT_MODE, deriveKey(key, "encryption", "AES"),
+					new IvParameterSpec(data, 0, IV_LENGTH));
+			return new String(cipher.doFinal(data, IV_LENGTH, length - IV_LENGTH), Charsets.UTF_8);
+		} catch (GeneralSecurityException e) {
+			throw new InvalidConfigException("Property " + desc.getProperty()
+					+ " cannot be decrypted with key " + keyId, e);
+		}
+	}
+
+	/**
+	 * Discards all decrypted values
+	 */
+	void invalidateAll() {
+		decrypted.invalidateAll();
+	}
+}
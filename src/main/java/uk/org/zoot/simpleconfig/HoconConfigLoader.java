@@ -0,0 +1,224 @@
+package uk.org.zoot.simpleconfig;
+
+import java.io.IOException;
+
+/**
+ * Streaming loader for HOCON documents.
+ *
+ * Supports braces being omitted around the root object, quoted and unquoted
+ * (optionally dotted) keys, <code>:</code> or <code>=</code> separators (or
+ * none before an object), newline or comma separated fields and array
+ * elements, <code>#</code> and <code>//</code> comments, unquoted and
+ * triple-quoted strings. Later values for the same key override earlier ones,
+ * objects with the same key are merged, a value (including an array) replaces
+ * an earlier object with the same key and an object replaces an earlier value.
+ *
+ * Substitutions, includes and <code>+=</code> are not supported and are
+ * reported as errors.
+ */
+public class HoconConfigLoader extends StreamingConfigLoader {
+
+	@Override
+	boolean replacesOverriddenValues() {
+		return true;
+	}
+
+	@Override
+	void parse(SourceReader in, PropertyFlattener out) throws IOException {
+		if (skipIgnored(in, false)) {
+			throw in.error("Unexpected '/'");
+		}
+		if (in.peek() == '{') {
+			in.read();
+			parseObjectBody(in, out, '}');
+			if (skipIgnored(in, false) || in.peek() != SourceReader.EOF) {
+				throw in.error("Unexpected content after end of document");
+			}
+		} else {
+			parseObjectBody(in, out, SourceReader.EOF);
+		}
+	}
+
+	private void parseObjectBody(SourceReader in, PropertyFlattener out, int closing) throws IOException {
+		while (true) {
+			if (skipIgnored(in, true)) {
+				throw in.error("Unexpected '/'");
+			}
+			int c = in.peek();
+			if (c == closing) {
+				in.read();
+				return;
+			} else if (c == SourceReader.EOF) {
+				throw in.error("Unexpected end of document, expected '" + (char) closing + "'");
+			}
+			String key = readKey(in);
+			skipInlineWhitespace(in);
+			c = in.peek();
+			if (c == '{') {
+				parseValue(in, out, key, false);
+			} else if (c == ':' || c == '=') {
+				in.read();
+				parseValue(in, out, key, skipIgnored(in, false));
+			} else if (c == '+') {
+				throw in.error("'+=' is not supported");
+			} else if ("include".equals(key)) {
+				throw in.error("includes are not supported");
+			} else {
+				throw in.error("Expected ':', '=' or '{' after key " + key);
+			}
+		}
+	}
+
+	private void parseArrayBody(SourceReader in, PropertyFlattener out) throws IOException {
+		while (true) {
+			boolean slash = skipIgnored(in, true);
+			int c = in.peek();
+			if (!slash && c == ']') {
+				in.read();
+				return;
+			} else if (!slash && c == SourceReader.EOF) {
+				throw in.error("Unexpected end of document, expected ']'");
+			}
+			parseValue(in, out, null, slash);
+		}
+	}
+
+	/**
+	 * Parses a value, slash is true if a leading '/' has already been read
+	 */
+	private void parseValue(SourceReader in, PropertyFlattener out, String key, boolean slash) throws IOException {
+		int c = in.peek();
+		if (slash) {
+			out.scalar(key, readUnquoted(in, "/"));
+		} else if (c == '{') {
+			in.read();
+			out.beginObject(key);
+			parseObjectBody(in, out, '}');
+			out.end();
+		} else if (c == '[') {
+			in.read();
+			out.beginArray(key);
+			parseArrayBody(in, out);
+			out.end();
+		} else if (c == '"') {
+			in.read();
+			out.scalar(key, readQuoted(in));
+		} else if (c == '$') {
+			throw in.error("substitutions are not supported");
+		} else {
+			String value = readUnquoted(in, "");
+			if (value.length() == 0) {
+				throw in.error("Expected a value" + (key == null ? "" : " for key " + key));
+			}
+			out.scalar(key, "null".equals(value) ? null : value);
+		}
+	}
+
+	private String readKey(SourceReader in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = in.peek()) != SourceReader.EOF) {
+			if (c == '"') {
+				in.read();
+				sb.append(JsonConfigLoader.readString(in));
+			} else if (Character.isWhitespace(c) || c == ':' || c == '=' || c == '{' || c == '+') {
+				break;
+			} else if (c == '}' || c == '[' || c == ']' || c == ',' || c == '#' || c == '$') {
+				throw in.error("Unexpected '" + (char) c + "' in key");
+			} else {
+				sb.append((char) in.read());
+			}
+		}
+		if (sb.length() == 0) {
+			throw in.error("Expected a key");
+		}
+		return sb.toString();
+	}
+
+	private String readQuoted(SourceReader in) throws IOException {
+		if (in.peek() != '"') {
+			return JsonConfigLoader.readString(in);
+		}
+		in.read();
+		if (in.peek() != '"') {
+			return "";
+		}
+		in.read();
+		StringBuilder sb = new StringBuilder();
+		int quotes = 0;
+		while (true) {
+			int c = in.read();
+			if (c == SourceReader.EOF) {
+				throw in.error("Unterminated triple-quoted string");
+			}
+			sb.append((char) c);
+			quotes = c == '"' ? quotes + 1 : 0;
+			// any quotes before the closing three are part of the value
+			if (quotes >= 3 && in.peek() != '"') {
+				sb.setLength(sb.length() - 3);
+				return sb.toString();
+			}
+		}
+	}
+
+	/**
+	 * Reads an unquoted value up to the end of line, a separator or a comment
+	 */
+	private String readUnquoted(SourceReader in, String start) throws IOException {
+		StringBuilder sb = new StringBuilder(start);
+		int c;
+		while ((c = in.peek()) != SourceReader.EOF && c != '\n' && c != ',' && c != '}' && c != ']' && c != '#') {
+			if (c == '/') {
+				in.read();
+				if (in.peek() == '/') {
+					skipToEndOfLine(in);
+					break;
+				}
+				sb.append('/');
+			} else if (c == '$' || c == '"' || c == '{' || c == '[') {
+				throw in.error("Unsupported '" + (char) c + "' in unquoted value");
+			} else {
+				sb.append((char) in.read());
+			}
+		}
+		return sb.toString().trim();
+	}
+
+	/**
+	 * Skips whitespace and comments, optionally also skipping field separators
+	 *
+	 * @return true if a '/' which does not start a comment has been read
+	 */
+	private boolean skipIgnored(SourceReader in, boolean separators) throws IOException {
+		int c;
+		while ((c = in.peek()) != SourceReader.EOF) {
+			if (c == '#') {
+				skipToEndOfLine(in);
+			} else if (c == '/') {
+				in.read();
+				if (in.peek() != '/') {
+					return true;
+				}
+				skipToEndOfLine(in);
+			} else if (Character.isWhitespace(c) || (separators && c == ',')) {
+				in.read();
+			} else {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private void skipInlineWhitespace(SourceReader in) throws IOException {
+		while (in.peek() == ' ' || in.peek() == '\t') {
+			in.read();
+		}
+	}
+
+	private void skipToEndOfLine(SourceReader in) throws IOException {
+		int c;
+		while ((c = in.peek()) != SourceReader.EOF && c != '\n') {
+			in.read();
+		}
+	}
+}
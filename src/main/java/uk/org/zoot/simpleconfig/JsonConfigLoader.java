@@ -0,0 +1,168 @@
+package uk.org.zoot.simpleconfig;
+
+import java.io.IOException;
+
+/**
+ * Streaming loader for JSON documents, the top level value must be an object
+ */
+public class JsonConfigLoader extends StreamingConfigLoader {
+
+	@Override
+	void parse(SourceReader in, PropertyFlattener out) throws IOException {
+		skipWhitespace(in);
+		if (in.read() != '{') {
+			throw in.error("Expected '{' at start of document");
+		}
+		parseObjectBody(in, out);
+		skipWhitespace(in);
+		if (in.peek() != SourceReader.EOF) {
+			throw in.error("Unexpected content after end of document");
+		}
+	}
+
+	private void parseObjectBody(SourceReader in, PropertyFlattener out) throws IOException {
+		skipWhitespace(in);
+		if (in.peek() == '}') {
+			in.read();
+			return;
+		}
+		while (true) {
+			skipWhitespace(in);
+			if (in.read() != '"') {
+				throw in.error("Expected a quoted key");
+			}
+			String key = readString(in);
+			skipWhitespace(in);
+			if (in.read() != ':') {
+				throw in.error("Expected ':' after key " + key);
+			}
+			parseValue(in, out, key);
+			skipWhitespace(in);
+			int c = in.read();
+			if (c == '}') {
+				return;
+			} else if (c != ',') {
+				throw in.error("Expected ',' or '}'");
+			}
+		}
+	}
+
+	private void parseArrayBody(SourceReader in, PropertyFlattener out) throws IOException {
+		skipWhitespace(in);
+		if (in.peek() == ']') {
+			in.read();
+			return;
+		}
+		while (true) {
+			parseValue(in, out, null);
+			skipWhitespace(in);
+			int c = in.read();
+			if (c == ']') {
+				return;
+			} else if (c != ',') {
+				throw in.error("Expected ',' or ']'");
+			}
+		}
+	}
+
+	private void parseValue(SourceReader in, PropertyFlattener out, String key) throws IOException {
+		skipWhitespace(in);
+		int c = in.peek();
+		if (c == '{') {
+			in.read();
+			out.beginObject(key);
+			parseObjectBody(in, out);
+			out.end();
+		} else if (c == '[') {
+			in.read();
+			out.beginArray(key);
+			parseArrayBody(in, out);
+			out.end();
+		} else if (c == '"') {
+			in.read();
+			out.scalar(key, readString(in));
+		} else {
+			String literal = readLiteral(in);
+			if ("null".equals(literal)) {
+				out.scalar(key, null);
+			} else if ("true".equals(literal) || "false".equals(literal) || isNumber(literal)) {
+				out.scalar(key, literal);
+			} else {
+				throw in.error("Unexpected value '" + literal + "'");
+			}
+		}
+	}
+
+	private String readLiteral(SourceReader in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = in.peek()) != SourceReader.EOF && (Character.isLetterOrDigit(c) || c == '-' || c == '+' || c == '.')) {
+			sb.append((char) in.read());
+		}
+		return sb.toString();
+	}
+
+	private static boolean isNumber(String literal) {
+		return literal.matches("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][-+]?[0-9]+)?");
+	}
+
+	/**
+	 * Reads the remainder of a string whose opening quote has been consumed
+	 */
+	static String readString(SourceReader in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		while (true) {
+			int c = in.read();
+			if (c == SourceReader.EOF || c == '\n') {
+				throw in.error("Unterminated string");
+			} else if (c == '"') {
+				return sb.toString();
+			} else if (c == '\\') {
+				int e = in.read();
+				switch (e) {
+				case '"':
+				case '\\':
+				case '/':
+					sb.append((char) e);
+					break;
+				case 'b':
+					sb.append('\b');
+					break;
+				case 'f':
+					sb.append('\f');
+					break;
+				case 'n':
+					sb.append('\n');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'u':
+					int code = 0;
+					for (int i = 0; i < 4; i++) {
+						int digit = Character.digit(in.read(), 16);
+						if (digit < 0) {
+							throw in.error("Invalid unicode escape");
+						}
+						code = code * 16 + digit;
+					}
+					sb.append((char) code);
+					break;
+				default:
+					throw in.error("Invalid escape sequence");
+				}
+			} else {
+				sb.append((char) c);
+			}
+		}
+	}
+
+	private static void skipWhitespace(SourceReader in) throws IOException {
+		while (Character.isWhitespace(in.peek())) {
+			in.read();
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package uk.org.zoot.simpleconfig;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Supplies the keys used to decrypt secret property values, keys are
+ * identified by the id embedded in each encrypted value so that keys can be
+ * rotated without re-encrypting every value at once
+ *
+ * @see KeyProviders
+ * @see ConfigBinder#ConfigBinder(KeyProvider)
+ */
+public interface KeyProvider {
+
+    /**
+     * @param keyId the id of a key
+     * @return the key, or null if it is not known
+     */
+    SecretKey getKey(String keyId);
+}
@@ -0,0 +1,65 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.collect.ImmutableMap;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Static utility methods for {@link KeyProvider}s
+ */
+public final class KeyProviders {
+
+	private KeyProviders() {
+	}
+
+	/**
+	 * @param keys secret keys by id
+	 * @return a provider of a fixed set of keys
+	 */
+	public static KeyProvider of(Map<String, ? extends SecretKey> keys) {
+		checkNotNull(keys, "keys is required");
+		final Map<String, SecretKey> copy = ImmutableMap.<String, SecretKey> copyOf(keys);
+		return new KeyProvider() {
+
+			@Override
+			public SecretKey getKey(String keyId) {
+				return copy.get(keyId);
+			}
+		};
+	}
+
+	/**
+	 * Creates a provider reading secret key entries from a local key store
+	 * (e.g. a PKCS12 or JCEKS file), key ids are key store aliases. Keys are
+	 * read from the store when needed, so keys added to a loaded store are
+	 * visible to the provider.
+	 *
+	 * @param keyStore a loaded key store
+	 * @param password the password of the key entries
+	 * @return a provider of the secret keys in the store
+	 */
+	public static KeyProvider fromKeyStore(final KeyStore keyStore, char[] password) {
+		checkNotNull(keyStore, "keyStore is required");
+		checkNotNull(password, "password is required");
+		final char[] passwordCopy = password.clone();
+		return new KeyProvider() {
+
+			@Override
+			public SecretKey getKey(String keyId) {
+				Key key;
+				try {
+					key = keyStore.getKey(keyId, passwordCopy);
+				} catch (GeneralSecurityException e) {
+					throw new IllegalStateException("Cannot read key " + keyId + " from key store", e);
+				}
+				return key instanceof SecretKey ? (SecretKey) key : null;
+			}
+		};
+	}
+}
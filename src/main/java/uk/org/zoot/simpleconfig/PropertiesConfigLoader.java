@@ -0,0 +1,29 @@
+package uk.org.zoot.simpleconfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Properties;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Loader for standard java property files, streams are read as ISO 8859-1 as
+ * per {@link Properties#load(InputStream)}
+ */
+public class PropertiesConfigLoader extends ConfigLoader {
+
+	@Override
+	public void load(InputStream in, Properties target) throws IOException {
+		checkNotNull(in, "in is required");
+		checkNotNull(target, "target is required");
+		target.load(in);
+	}
+
+	@Override
+	public void load(Reader reader, Properties target) throws IOException {
+		checkNotNull(reader, "reader is required");
+		checkNotNull(target, "target is required");
+		target.load(reader);
+	}
+}
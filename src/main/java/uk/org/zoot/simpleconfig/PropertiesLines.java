@@ -0,0 +1,347 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.base.Objects;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An index of properties in the {@link java.util.Properties} format by
+ * logical line, which is updated incrementally as a file is read again.
+ *
+ * Each line of a new read is compared with the line at the same position of
+ * the previous read, or looked up by its string hash when lines have been
+ * inserted or removed, and reuses its parsed key and value, so only new or
+ * changed lines are parsed. The result of a read is the set of changes to the
+ * index, whose size depends on the number of changed lines rather than the
+ * size of the file, and which are only applied once accepted.
+ *
+ * Values can be read concurrently, reads and updates must be serialized and
+ * the changes of a read applied or discarded before the next read.
+ */
+final class PropertiesLines implements PropertySource {
+
+	private static final class Entry {
+		final String line;
+		final String key;
+		final String value;
+		// a position of the line in the last applied read
+		int index;
+		// the last read which contained this line
+		int generation;
+
+		Entry(String line, String key, String value) {
+			this.line = line;
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	// the lines of the last applied read, in order
+	private List<Entry> entries = new ArrayList<Entry>();
+	private final Map<String, Entry> entriesByLine = new HashMap<String, Entry>();
+	private final ConcurrentMap<String, String> values = new ConcurrentHashMap<String, String>();
+	// the number of distinct lines of each key which is set on more than one line
+	private final Map<String, Integer> duplicatedKeys = new HashMap<String, Integer>();
+	private int generation;
+
+	@Override
+	public String getProperty(String key) {
+		return values.get(key);
+	}
+
+	/**
+	 * Reads properties and compares them with the current content of the index
+	 *
+	 * @param reader the properties
+	 * @return the changes, which have not been applied
+	 * @throws IOException              if the properties cannot be read
+	 * @throws IllegalArgumentException if a line contains a malformed unicode escape
+	 */
+	Changes read(Reader reader) throws IOException {
+		BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+		Changes changes = new Changes(++generation);
+		StringBuilder continued = null;
+		String line;
+		while ((line = in.readLine()) != null) {
+			int start = skipWhitespace(line, 0);
+			if (continued == null && (start == line.length() || line.charAt(start) == '#' || line.charAt(start) == '!')) {
+				continue;
+			}
+			int end = line.length();
+			boolean continues = endsWithEscape(line);
+			if (continues) {
+				end--;
+			}
+			if (continues || continued != null) {
+				if (continued == null) {
+					continued = new StringBuilder();
+				}
+				continued.append(line, start, end);
+				if (continues) {
+					continue;
+				}
+			}
+			changes.addLine(continued != null ? continued.toString() : line.substring(start));
+			continued = null;
+		}
+		if (continued != null) {
+			changes.addLine(continued.toString());
+		}
+		changes.finish();
+		return changes;
+	}
+
+	/**
+	 * The changes found by a read, which also serve the values of the read
+	 */
+	final class Changes implements PropertySource {
+		private final int readGeneration;
+		private final List<Entry> readEntries = new ArrayList<Entry>(entries.size());
+		private final Map<String, Entry> addedLines = new LinkedHashMap<String, Entry>();
+		private final Map<String, Entry> removedLines = new HashMap<String, Entry>();
+		// keys whose value may have changed, and the value of their last line
+		private final Set<String> candidateKeys = new HashSet<String>(duplicatedKeys.keySet());
+		private final Map<String, String> lastValues = new HashMap<String, String>();
+		private final Map<String, String> changedValues = new HashMap<String, String>();
+		private int reusedLines;
+		// the position of the next line in the previous read
+		private int previousIndex;
+
+		private Changes(int readGeneration) {
+			this.readGeneration = readGeneration;
+		}
+
+		private void addLine(String line) {
+			Entry entry;
+			if (previousIndex < entries.size() && entries.get(previousIndex).line.equals(line)) {
+				entry = entries.get(previousIndex);
+			} else {
+				entry = entriesByLine.get(line);
+				if (entry != null) {
+					// lines have been inserted or removed, continue from the matching line
+					previousIndex = entry.index;
+				}
+			}
+			previousIndex++;
+
+			if (entry != null) {
+				if (entry.generation != readGeneration) {
+					entry.generation = readGeneration;
+					reusedLines++;
+				}
+			} else {
+				entry = addedLines.get(line);
+				if (entry == null) {
+					entry = parseLine(line);
+					addedLines.put(line, entry);
+				}
+				candidateKeys.add(entry.key);
+			}
+			readEntries.add(entry);
+			// the last line of a key wins
+			if (!candidateKeys.isEmpty() && candidateKeys.contains(entry.key)) {
+				lastValues.put(entry.key, entry.value);
+			}
+		}
+
+		private void finish() {
+			if (reusedLines < entriesByLine.size()) {
+				for (Entry entry : entries) {
+					if (entry.generation != readGeneration) {
+						removedLines.put(entry.line, entry);
+					}
+				}
+			}
+			for (Map.Entry<String, String> entry : lastValues.entrySet()) {
+				if (!Objects.equal(values.get(entry.getKey()), entry.getValue())) {
+					changedValues.put(entry.getKey(), entry.getValue());
+				}
+			}
+			for (Entry removed : removedLines.values()) {
+				if (!lastValues.containsKey(removed.key)) {
+					changedValues.put(removed.key, null);
+				}
+			}
+		}
+
+		@Override
+		public String getProperty(String key) {
+			return changedValues.containsKey(key) ? changedValues.get(key) : values.get(key);
+		}
+
+		/**
+		 * @return the keys which have been added, removed or have a different value
+		 */
+		Set<String> getChangedKeys() {
+			return Collections.unmodifiableSet(changedValues.keySet());
+		}
+
+		/**
+		 * @return the number of lines which were parsed rather than reused
+		 */
+		int getParsedLineCount() {
+			return addedLines.size();
+		}
+
+		/**
+		 * Applies the changes to the index
+		 */
+		void apply() {
+			if (readGeneration != generation) {
+				throw new IllegalStateException("the index has been read again since these changes were read");
+			}
+			Map<String, Integer> lineDeltas = new HashMap<String, Integer>();
+			for (Map.Entry<String, Entry> removed : removedLines.entrySet()) {
+				entriesByLine.remove(removed.getKey());
+				addLineDelta(lineDeltas, removed.getValue().key, -1);
+			}
+			for (Map.Entry<String, Entry> added : addedLines.entrySet()) {
+				added.getValue().generation = readGeneration;
+				entriesByLine.put(added.getKey(), added.getValue());
+				addLineDelta(lineDeltas, added.getValue().key, 1);
+			}
+			for (int i = 0; i < readEntries.size(); i++) {
+				readEntries.get(i).index = i;
+			}
+			entries = readEntries;
+			for (Map.Entry<String, Integer> delta : lineDeltas.entrySet()) {
+				Integer duplicated = duplicatedKeys.get(delta.getKey());
+				int lines = (duplicated != null ? duplicated : values.containsKey(delta.getKey()) ? 1 : 0)
+						+ delta.getValue();
+				if (lines > 1) {
+					duplicatedKeys.put(delta.getKey(), lines);
+				} else {
+					duplicatedKeys.remove(delta.getKey());
+				}
+			}
+			for (Map.Entry<String, String> changed : changedValues.entrySet()) {
+				if (changed.getValue() == null) {
+					values.remove(changed.getKey());
+				} else {
+					values.put(changed.getKey(), changed.getValue());
+				}
+			}
+		}
+	}
+
+	private static void addLineDelta(Map<String, Integer> deltas, String key, int delta) {
+		Integer current = deltas.get(key);
+		deltas.put(key, (current != null ? current : 0) + delta);
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\f';
+	}
+
+	private static int skipWhitespace(String line, int start) {
+		while (start < line.length() && isWhitespace(line.charAt(start))) {
+			start++;
+		}
+		return start;
+	}
+
+	/**
+	 * @return true if the line ends with an odd number of backslashes, and so
+	 *         continues on the next line
+	 */
+	private static boolean endsWithEscape(String line) {
+		int backslashes = 0;
+		for (int i = line.length() - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+			backslashes++;
+		}
+		return backslashes % 2 == 1;
+	}
+
+	/**
+	 * Splits a logical line into its key and value, as {@link java.util.Properties#load(Reader)}
+	 */
+	private static Entry parseLine(String line) {
+		int limit = line.length();
+		int keyEnd = 0;
+		int valueStart = limit;
+		boolean hasSeparator = false;
+		boolean precedingBackslash = false;
+		while (keyEnd < limit) {
+			char c = line.charAt(keyEnd);
+			if ((c == '=' || c == ':') && !precedingBackslash) {
+				valueStart = keyEnd + 1;
+				hasSeparator = true;
+				break;
+			} else if (isWhitespace(c) && !precedingBackslash) {
+				valueStart = keyEnd + 1;
+				break;
+			}
+			precedingBackslash = c == '\\' && !precedingBackslash;
+			keyEnd++;
+		}
+		while (valueStart < limit) {
+			char c = line.charAt(valueStart);
+			if (!isWhitespace(c)) {
+				if (!hasSeparator && (c == '=' || c == ':')) {
+					hasSeparator = true;
+				} else {
+					break;
+				}
+			}
+			valueStart++;
+		}
+		return new Entry(line, unescape(line, 0, keyEnd), unescape(line, valueStart, limit));
+	}
+
+	private static String unescape(String line, int start, int end) {
+		int backslash = line.indexOf('\\', start);
+		if (backslash < 0 || backslash >= end) {
+			return line.substring(start, end);
+		}
+		StringBuilder out = new StringBuilder(end - start);
+		int i = start;
+		while (i < end) {
+			char c = line.charAt(i++);
+			if (c != '\\') {
+				out.append(c);
+				continue;
+			}
+			if (i == end) {
+				break;
+			}
+			c = line.charAt(i++);
+			if (c == 'u') {
+				if (i + 4 > end) {
+					throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+				}
+				int value = 0;
+				for (int j = 0; j < 4; j++) {
+					int digit = Character.digit(line.charAt(i++), 16);
+					if (digit < 0) {
+						throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+					}
+					value = (value << 4) + digit;
+				}
+				out.append((char) value);
+			} else if (c == 't') {
+				out.append('\t');
+			} else if (c == 'r') {
+				out.append('\r');
+			} else if (c == 'n') {
+				out.append('\n');
+			} else if (c == 'f') {
+				out.append('\f');
+			} else {
+				out.append(c);
+			}
+		}
+		return out.toString();
+	}
+}
@@ -0,0 +1,19 @@
+package uk.org.zoot.simpleconfig;
+
+/**
+ * A pre-compiled check on the converted value of a property, created from
+ * constraint annotations when property descriptions are built
+ *
+ * @see uk.org.zoot.simpleconfig.constraints
+ */
+public interface PropertyConstraint {
+
+    /**
+     * Checks a converted property value
+     *
+     * @param desc  the property being checked
+     * @param value the converted value, multi-valued properties are passed as their container
+     * @throws InvalidConfigException if the value does not satisfy the constraint
+     */
+    void check(PropertyDescription desc, Object value) throws InvalidConfigException;
+}
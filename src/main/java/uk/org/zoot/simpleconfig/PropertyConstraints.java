@@ -0,0 +1,282 @@
+package uk.org.zoot.simpleconfig;
+
+import com.fasterxml.classmate.members.ResolvedMethod;
+import uk.org.zoot.simpleconfig.constraints.Max;
+import uk.org.zoot.simpleconfig.constraints.Min;
+import uk.org.zoot.simpleconfig.constraints.NotEmpty;
+import uk.org.zoot.simpleconfig.constraints.Pattern;
+import uk.org.zoot.simpleconfig.constraints.Size;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiles constraint annotations on a config method into
+ * {@link PropertyConstraint}s.
+ *
+ * Both the annotations in {@link uk.org.zoot.simpleconfig.constraints} and the
+ * equivalent Bean Validation annotations (<code>javax.validation</code> or
+ * <code>jakarta.validation</code> <code>Min</code>, <code>Max</code>,
+ * <code>Size</code>, <code>Pattern</code>, <code>NotNull</code>,
+ * <code>NotEmpty</code> and <code>NotBlank</code>) are recognised, the latter by
+ * name so that no Bean Validation runtime is required. Annotation attributes
+ * are only read here, checking a value involves no reflection.
+ */
+final class PropertyConstraints {
+
+	private static final List<String> BEAN_VALIDATION_PACKAGES = Arrays.asList(
+			"javax.validation.constraints.", "jakarta.validation.constraints.");
+
+	private PropertyConstraints() {
+	}
+
+	/**
+	 * @param method      the method being described
+	 * @param multiValued
+	 * @param elementType the type of the property, or of each value of a multi-valued property
+	 * @return the constraints of the property, in declaration order
+	 * @throws InvalidConfigInterfaceException if a constraint does not apply to the property type
+	 */
+	static List<PropertyConstraint> compile(ResolvedMethod method, boolean multiValued, Class<?> elementType) {
+		List<PropertyConstraint> constraints = new ArrayList<PropertyConstraint>();
+		for (Annotation a : annotationsInDeclarationOrder(method)) {
+			String name = a.annotationType().getName();
+			String simpleName = null;
+			for (String pkg : BEAN_VALIDATION_PACKAGES) {
+				if (name.startsWith(pkg)) {
+					simpleName = name.substring(pkg.length());
+				}
+			}
+
+			PropertyConstraint constraint;
+			if (a instanceof Min || "Min".equals(simpleName)) {
+				long min = a instanceof Min ? ((Min) a).value() : (Long) attribute(method, a, "value");
+				checkApplies(method, a, isNumeric(elementType));
+				constraint = new RangeConstraint(min, true);
+			} else if (a instanceof Max || "Max".equals(simpleName)) {
+				long max = a instanceof Max ? ((Max) a).value() : (Long) attribute(method, a, "value");
+				checkApplies(method, a, isNumeric(elementType));
+				constraint = new RangeConstraint(max, false);
+			} else if (a instanceof Size || "Size".equals(simpleName)) {
+				int min = a instanceof Size ? ((Size) a).min() : (Integer) attribute(method, a, "min");
+				int max = a instanceof Size ? ((Size) a).max() : (Integer) attribute(method, a, "max");
+				checkApplies(method, a, multiValued || elementType == String.class);
+				constraint = new SizeConstraint(min, max, true);
+			} else if (a instanceof Pattern || "Pattern".equals(simpleName)) {
+				String regexp = a instanceof Pattern ? ((Pattern) a).value() : (String) attribute(method, a, "regexp");
+				int flags = a instanceof Pattern ? 0 : patternFlags(method, a);
+				checkApplies(method, a, elementType == String.class);
+				try {
+					constraint = new PatternConstraint(java.util.regex.Pattern.compile(regexp, flags));
+				} catch (PatternSyntaxException e) {
+					throw new InvalidConfigInterfaceException("Method " + method + " has an invalid pattern " + regexp, e);
+				}
+			} else if (a instanceof NotEmpty || "NotEmpty".equals(simpleName) || "NotBlank".equals(simpleName)) {
+				checkApplies(method, a, multiValued || elementType == String.class);
+				constraint = new SizeConstraint(1, Integer.MAX_VALUE, false);
+			} else if ("NotNull".equals(simpleName)) {
+				constraint = NOT_NULL;
+			} else {
+				continue;
+			}
+			constraints.add(constraint);
+		}
+		return constraints.isEmpty() ? Collections.<PropertyConstraint> emptyList()
+				: Collections.unmodifiableList(constraints);
+	}
+
+	/**
+	 * Orders the (possibly inherited) annotations of a method by their
+	 * declaration on the method itself, followed by any inherited annotations
+	 */
+	private static Collection<Annotation> annotationsInDeclarationOrder(ResolvedMethod method) {
+		Map<Class<? extends Annotation>, Annotation> ordered = new LinkedHashMap<Class<? extends Annotation>, Annotation>();
+		for (Annotation declared : method.getRawMember().getAnnotations()) {
+			Annotation merged = method.getAnnotations().get(declared.annotationType());
+			ordered.put(declared.annotationType(), merged != null ? merged : declared);
+		}
+		for (Annotation a : method.getAnnotations()) {
+			if (!ordered.containsKey(a.annotationType())) {
+				ordered.put(a.annotationType(), a);
+			}
+		}
+		return ordered.values();
+	}
+
+	private static boolean isNumeric(Class<?> type) {
+		return type == int.class || type == long.class || type == float.class || type == double.class;
+	}
+
+	private static void checkApplies(ResolvedMethod method, Annotation a, boolean applies) {
+		if (!applies) {
+			throw new InvalidConfigInterfaceException("Method " + method + " has constraint @"
+					+ a.annotationType().getSimpleName() + " which does not apply to its return type");
+		}
+	}
+
+	private static Object attribute(ResolvedMethod method, Annotation a, String name) {
+		try {
+			Method m = a.annotationType().getMethod(name);
+			return m.invoke(a);
+		} catch (Exception e) {
+			throw new InvalidConfigInterfaceException("Method " + method + " has an unreadable constraint " + a, e);
+		}
+	}
+
+	/**
+	 * @return the {@link java.util.regex.Pattern} flags of the <code>flags</code>
+	 *         of a Bean Validation <code>Pattern</code>, each of which holds its
+	 *         flag in <code>getValue()</code>
+	 */
+	private static int patternFlags(ResolvedMethod method, Annotation a) {
+		int flags = 0;
+		for (Object flag : (Object[]) attribute(method, a, "flags")) {
+			try {
+				flags |= (Integer) flag.getClass().getMethod("getValue").invoke(flag);
+			} catch (Exception e) {
+				throw new InvalidConfigInterfaceException("Method " + method + " has an unreadable constraint " + a, e);
+			}
+		}
+		return flags;
+	}
+
+	private static Collection<?> elements(PropertyDescription desc, Object value) {
+		if (!desc.isMultiValued()) {
+			return Collections.singletonList(value);
+		}
+		return value.getClass().isArray() ? ConfigBinder.arrayToList(value) : (Collection<?>) value;
+	}
+
+	/**
+	 * @return the value as shown in error messages, secret values are masked
+	 */
+	private static Object display(PropertyDescription desc, Object value) {
+		return desc.isSecret() ? "****" : value;
+	}
+
+	private static final PropertyConstraint NOT_NULL = new PropertyConstraint() {
+
+		@Override
+		public void check(PropertyDescription desc, Object value) {
+			if (value == null) {
+				throw new InvalidConfigException("Property " + desc.getProperty() + " must not be null");
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "not null";
+		}
+	};
+
+	private static final class RangeConstraint implements PropertyConstraint {
+		private final long bound;
+		private final boolean min;
+
+		RangeConstraint(long bound, boolean min) {
+			this.bound = bound;
+			this.min = min;
+		}
+
+		@Override
+		public void check(PropertyDescription desc, Object value) {
+			if (value == null) {
+				return;
+			}
+			for (Object element : elements(desc, value)) {
+				int cmp;
+				if (element instanceof Float || element instanceof Double) {
+					cmp = Double.compare(((Number) element).doubleValue(), bound);
+				} else {
+					long v = ((Number) element).longValue();
+					cmp = v < bound ? -1 : (v == bound ? 0 : 1);
+				}
+				if (min ? cmp < 0 : cmp > 0) {
+					throw new InvalidConfigException(String.format("Property %s value %s is %s than the %s %d",
+							desc.getProperty(), display(desc, element), min ? "less" : "greater", min ? "minimum" : "maximum", bound));
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return (min ? "min=" : "max=") + bound;
+		}
+	}
+
+	private static final class SizeConstraint implements PropertyConstraint {
+		private final int min;
+		private final int max;
+		private final boolean nullValid;
+
+		SizeConstraint(int min, int max, boolean nullValid) {
+			this.min = min;
+			this.max = max;
+			this.nullValid = nullValid;
+		}
+
+		@Override
+		public void check(PropertyDescription desc, Object value) {
+			int size;
+			if (value == null) {
+				if (nullValid) {
+					return;
+				}
+				size = 0;
+			} else if (value instanceof String) {
+				size = ((String) value).length();
+			} else {
+				size = elements(desc, value).size();
+			}
+			if (!nullValid && size == 0) {
+				throw new InvalidConfigException("Property " + desc.getProperty() + " must not be empty");
+			}
+			if (size < min || size > max) {
+				throw new InvalidConfigException(String.format("Property %s has size %d which is not %s",
+						desc.getProperty(), size, this));
+			}
+		}
+
+		@Override
+		public String toString() {
+			if (!nullValid) {
+				return "not empty";
+			}
+			return "size=" + min + ".." + (max == Integer.MAX_VALUE ? "" : Integer.toString(max));
+		}
+	}
+
+	private static final class PatternConstraint implements PropertyConstraint {
+		private final java.util.regex.Pattern pattern;
+
+		PatternConstraint(java.util.regex.Pattern pattern) {
+			this.pattern = pattern;
+		}
+
+		@Override
+		public void check(PropertyDescription desc, Object value) {
+			if (value == null) {
+				return;
+			}
+			for (Object element : elements(desc, value)) {
+				if (!pattern.matcher((String) element).matches()) {
+					throw new InvalidConfigException(String.format("Property %s value %s does not match %s",
+							desc.getProperty(), display(desc, element), pattern.pattern()));
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "pattern=" + pattern.pattern() + (pattern.flags() != 0 ? " flags=" + pattern.flags() : "");
+		}
+	}
+}
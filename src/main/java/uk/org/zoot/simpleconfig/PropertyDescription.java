@@ -1,5 +1,7 @@
 package uk.org.zoot.simpleconfig;
 
+import java.util.List;
+
 /**
  * Created with IntelliJ IDEA.
  * User: occ
@@ -10,6 +12,11 @@ package uk.org.zoot.simpleconfig;
 public interface PropertyDescription {
     String getProperty();
 
+    /**
+     * @return the property name with case and separators removed, as matched by a {@link RelaxedPropertySource}
+     */
+    String getRelaxedKey();
+
     String getDescription();
 
     boolean isRequired();
@@ -21,4 +28,8 @@ public interface PropertyDescription {
     Class<?> getComponentType();
 
     String getDefaultValue();
+
+    boolean isSecret();
+
+    List<PropertyConstraint> getConstraints();
 }
@@ -3,6 +3,7 @@ package uk.org.zoot.simpleconfig;
 import com.google.common.base.Preconditions;
 
 import java.lang.reflect.Method;
+import java.util.List;
 
 /**
  *
@@ -11,9 +12,10 @@ public class PropertyDescriptionImpl implements PropertyDescription {
 
 	protected PropertyDescriptionImpl(Method readMethod, String property, String description,
 			boolean required, Class<?> type, boolean multiValued, Class<?> componentType,
-			String defaultValue) {
+			String defaultValue, List<PropertyConstraint> constraints, boolean secret) {
 		super();
 		this.property = Preconditions.checkNotNull(property);
+		this.relaxedKey = RelaxedPropertySource.relaxedKey(property);
 		this.description = description;
 		this.required = required;
 		this.type = Preconditions.checkNotNull(type);
@@ -21,10 +23,13 @@ public class PropertyDescriptionImpl implements PropertyDescription {
 		this.readMethod = readMethod;
 		this.multiValued = multiValued;
 		this.componentType = componentType;
+		this.constraints = Preconditions.checkNotNull(constraints);
+		this.secret = secret;
 
 	}
 
 	private final String property;
+	private final String relaxedKey;
 	private final String description;
 	private final boolean required;
 	private final Class<?> type;
@@ -33,12 +38,19 @@ public class PropertyDescriptionImpl implements PropertyDescription {
 	private final String defaultValue;
 	private final Method readMethod;
 	private final boolean multiValued;
+	private final List<PropertyConstraint> constraints;
+	private final boolean secret;
 
 	@Override
 	public String getProperty() {
 		return property;
 	}
 
+	@Override
+	public String getRelaxedKey() {
+		return relaxedKey;
+	}
+
 	@Override
 	public String getDescription() {
 		return description;
@@ -69,6 +81,16 @@ public class PropertyDescriptionImpl implements PropertyDescription {
 		return defaultValue;
 	}
 
+	@Override
+	public List<PropertyConstraint> getConstraints() {
+		return constraints;
+	}
+
+	@Override
+	public boolean isSecret() {
+		return secret;
+	}
+
 	public Method getReadMethod() {
 		return readMethod;
 	}
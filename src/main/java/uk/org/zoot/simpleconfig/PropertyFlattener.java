@@ -0,0 +1,164 @@
+package uk.org.zoot.simpleconfig;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Receives structural events from a streaming parser and writes flattened
+ * <code>a.b.c</code> style keys straight into a property bundle.
+ *
+ * Arrays of scalars are joined into the comma-separated form understood by
+ * multi-valued properties, array elements which are themselves objects or
+ * arrays are addressed by index (<code>servers.0.host</code>).
+ *
+ * Optionally, as in HOCON, a value or array replaces the keys under its path
+ * which were written earlier, and an object or a nested value replaces a
+ * value written earlier at an enclosing path.
+ */
+final class PropertyFlattener {
+
+	private static final class Frame {
+		final String path;
+		final boolean array;
+		int index;
+		int scalars;
+		StringBuilder joined;
+
+		Frame(String path, boolean array) {
+			this.path = path;
+			this.array = array;
+		}
+	}
+
+	private final Properties target;
+	private final List<Frame> stack = new ArrayList<Frame>();
+	private final boolean replaceOverridden;
+	// the paths which have had keys written under them, when replacing overridden values
+	private final Set<String> parents = new HashSet<String>();
+
+	PropertyFlattener(Properties target, boolean replaceOverridden) {
+		this.target = target;
+		this.replaceOverridden = replaceOverridden;
+		stack.add(new Frame("", false));
+	}
+
+	/**
+	 * Starts a nested object
+	 *
+	 * @param name the key of the object, ignored inside arrays
+	 */
+	void beginObject(String name) {
+		String path = childPath(name);
+		replace(path, true);
+		stack.add(new Frame(path, false));
+	}
+
+	/**
+	 * Starts an array
+	 *
+	 * @param name the key of the array, ignored inside arrays
+	 */
+	void beginArray(String name) {
+		String path = childPath(name);
+		replace(path, false);
+		stack.add(new Frame(path, true));
+	}
+
+	/**
+	 * Ends the innermost object or array
+	 */
+	void end() {
+		if (stack.size() == 1) {
+			throw new IllegalStateException("no open object or array");
+		}
+		Frame frame = stack.remove(stack.size() - 1);
+		if (frame.array && (frame.scalars > 0 || frame.index == 0)) {
+			target.setProperty(frame.path, frame.joined == null ? "" : frame.joined.toString());
+		}
+	}
+
+	/**
+	 * Emits a scalar value, null values leave the property unset
+	 *
+	 * @param name  the key of the value, ignored inside arrays
+	 * @param value the textual value
+	 */
+	void scalar(String name, String value) {
+		Frame top = top();
+		if (top.array) {
+			top.index++;
+			if (value == null) {
+				return;
+			}
+			if (value.indexOf(',') >= 0) {
+				throw new InvalidConfigException("Array element '" + value + "' of " + top.path
+						+ " contains ',' which cannot be represented in a multi-valued property");
+			}
+			if (top.joined == null) {
+				top.joined = new StringBuilder();
+			} else {
+				top.joined.append(',');
+			}
+			top.joined.append(value);
+			top.scalars++;
+		} else if (value != null) {
+			String path = childPath(name);
+			replace(path, false);
+			target.setProperty(path, value);
+		}
+	}
+
+	/**
+	 * Removes the earlier values a value at a path overrides
+	 *
+	 * @param path   the path of the new value
+	 * @param object true if the new value is an object, which merges with the
+	 *               keys under its path
+	 */
+	private void replace(String path, boolean object) {
+		if (!replaceOverridden) {
+			return;
+		}
+		for (int dot = path.indexOf('.'); dot >= 0; dot = path.indexOf('.', dot + 1)) {
+			String parent = path.substring(0, dot);
+			parents.add(parent);
+			target.remove(parent);
+		}
+		if (object) {
+			parents.add(path);
+			target.remove(path);
+		} else if (parents.remove(path)) {
+			String prefix = path + ".";
+			for (Iterator<Object> keys = target.keySet().iterator(); keys.hasNext();) {
+				if (keys.next().toString().startsWith(prefix)) {
+					keys.remove();
+				}
+			}
+		}
+	}
+
+	boolean inArray() {
+		return top().array;
+	}
+
+	int depth() {
+		return stack.size() - 1;
+	}
+
+	private Frame top() {
+		return stack.get(stack.size() - 1);
+	}
+
+	private String childPath(String name) {
+		Frame top = top();
+		String segment = top.array ? Integer.toString(top.index++) : name;
+		if (segment == null) {
+			throw new IllegalStateException("a key is required outside of arrays");
+		}
+		return top.path.length() == 0 ? segment : top.path + "." + segment;
+	}
+}
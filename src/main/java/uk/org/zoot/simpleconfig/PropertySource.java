@@ -0,0 +1,17 @@
+package uk.org.zoot.simpleconfig;
+
+/**
+ * A source of raw property values which can be bound with a
+ * {@link ConfigBinder}, values are read from the source each time a bound
+ * method is called
+ *
+ * @see PropertySources
+ */
+public interface PropertySource {
+
+    /**
+     * @param key the property name
+     * @return the raw value of the property, or null if it is not set
+     */
+    String getProperty(String key);
+}
@@ -0,0 +1,65 @@
+package uk.org.zoot.simpleconfig;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Static utility methods for {@link PropertySource}s
+ */
+public final class PropertySources {
+
+	private PropertySources() {
+	}
+
+	/**
+	 * @param bundle a property bundle
+	 * @return a source reading from the bundle (including its defaults)
+	 */
+	public static PropertySource fromProperties(final Properties bundle) {
+		checkNotNull(bundle, "bundle is required");
+		return new PropertySource() {
+
+			@Override
+			public String getProperty(String key) {
+				return bundle.getProperty(key);
+			}
+		};
+	}
+
+	/**
+	 * @param source a property source
+	 * @param desc   the property
+	 * @return the raw value of the property, looked up by descriptor if the
+	 *         source supports it, or null if it is not set
+	 */
+	static String getProperty(PropertySource source, PropertyDescription desc) {
+		if (source instanceof DescriptorPropertySource) {
+			return ((DescriptorPropertySource) source).getProperty(desc);
+		}
+		return source.getProperty(desc.getProperty());
+	}
+
+	/**
+	 * @param source a property source
+	 * @param desc   the property
+	 * @return the keys which set different values for the property, or an
+	 *         empty list if the property is not ambiguous
+	 */
+	static List<String> getAmbiguousKeys(PropertySource source, PropertyDescription desc) {
+		if (source instanceof DescriptorPropertySource) {
+			return ((DescriptorPropertySource) source).getAmbiguousKeys(desc);
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @param source a property source
+	 * @return true if the source matches properties regardless of case and separators
+	 */
+	static boolean isRelaxed(PropertySource source) {
+		return source instanceof DescriptorPropertySource && ((DescriptorPropertySource) source).isRelaxed();
+	}
+}
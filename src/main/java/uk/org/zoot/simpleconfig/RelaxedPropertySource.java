@@ -0,0 +1,158 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A property source which matches property names regardless of case and
+ * separators, so that <code>db.url</code> is read from any of
+ * <code>db.url</code>, <code>DB_URL</code>, <code>db-url</code> or
+ * <code>dbUrl</code>.
+ *
+ * Every spelling of a name reduces to the same relaxed key (the lower case
+ * letters and digits of the name). The source is indexed by relaxed key when
+ * it is built and each {@link PropertyDescription} computes its relaxed key
+ * once, so reading a bound property is a single lookup.
+ *
+ * The source is built from one or more layers, such as a property file
+ * followed by the environment, values in later layers override those in
+ * earlier layers. Different values for the same relaxed key within one layer
+ * are ambiguous, and are reported when the source is validated.
+ *
+ * Created with {@link #builder()}.
+ */
+public final class RelaxedPropertySource implements DescriptorPropertySource {
+
+	private final Map<String, String> values;
+	private final Map<String, List<String>> ambiguousKeys;
+
+	private RelaxedPropertySource(Builder builder) {
+		this.values = ImmutableMap.copyOf(builder.values);
+		this.ambiguousKeys = ImmutableMap.copyOf(builder.ambiguousKeys);
+	}
+
+	/**
+	 * @return a builder for a relaxed source
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	@Override
+	public String getProperty(String key) {
+		return values.get(relaxedKey(key));
+	}
+
+	@Override
+	public String getProperty(PropertyDescription desc) {
+		return values.get(desc.getRelaxedKey());
+	}
+
+	/**
+	 * @return the keys which set different values for the property within a
+	 *         single layer, or an empty list if the property is not ambiguous
+	 */
+	@Override
+	public List<String> getAmbiguousKeys(PropertyDescription desc) {
+		List<String> keys = ambiguousKeys.get(desc.getRelaxedKey());
+		return keys != null ? keys : Collections.<String> emptyList();
+	}
+
+	@Override
+	public boolean isRelaxed() {
+		return true;
+	}
+
+	/**
+	 * @param key a property name
+	 * @return the lower case letters and digits of the name
+	 */
+	static String relaxedKey(String key) {
+		StringBuilder relaxed = new StringBuilder(key.length());
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				relaxed.append(Character.toLowerCase(c));
+			}
+		}
+		return relaxed.toString();
+	}
+
+	/**
+	 * Builder for {@link RelaxedPropertySource}s
+	 */
+	public static final class Builder {
+		private final Map<String, String> values = new HashMap<String, String>();
+		private final Map<String, List<String>> ambiguousKeys = new HashMap<String, List<String>>();
+
+		private Builder() {
+		}
+
+		/**
+		 * Adds a layer of properties (including their defaults)
+		 */
+		public Builder add(Properties bundle) {
+			checkNotNull(bundle, "bundle is required");
+			Map<String, String> layer = new HashMap<String, String>();
+			for (String key : bundle.stringPropertyNames()) {
+				layer.put(key, bundle.getProperty(key));
+			}
+			return add(layer);
+		}
+
+		/**
+		 * Adds a layer of values keyed by property name
+		 */
+		public Builder add(Map<String, String> layer) {
+			checkNotNull(layer, "layer is required");
+			Map<String, String> keys = new HashMap<String, String>();
+			Map<String, String> layerValues = new HashMap<String, String>();
+			Map<String, List<String>> layerAmbiguousKeys = new HashMap<String, List<String>>();
+			for (Map.Entry<String, String> entry : layer.entrySet()) {
+				String relaxed = relaxedKey(entry.getKey());
+				String previous = layerValues.put(relaxed, entry.getValue());
+				if (previous == null) {
+					keys.put(relaxed, entry.getKey());
+				} else if (!previous.equals(entry.getValue())) {
+					List<String> ambiguous = layerAmbiguousKeys.get(relaxed);
+					if (ambiguous == null) {
+						ambiguous = new ArrayList<String>();
+						ambiguous.add(keys.get(relaxed));
+						layerAmbiguousKeys.put(relaxed, ambiguous);
+					}
+					ambiguous.add(entry.getKey());
+				}
+			}
+
+			values.putAll(layerValues);
+			// a later layer resolves any ambiguity in earlier layers
+			ambiguousKeys.keySet().removeAll(layerValues.keySet());
+			for (Map.Entry<String, List<String>> entry : layerAmbiguousKeys.entrySet()) {
+				List<String> sorted = new ArrayList<String>(entry.getValue());
+				Collections.sort(sorted);
+				ambiguousKeys.put(entry.getKey(), ImmutableList.copyOf(sorted));
+			}
+			return this;
+		}
+
+		/**
+		 * Adds a layer of the environment variables of this process
+		 */
+		public Builder addEnvironment() {
+			return add(System.getenv());
+		}
+
+		public RelaxedPropertySource build() {
+			return new RelaxedPropertySource(this);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Validated configs for one or more interfaces, bound to a property file
+ * which is reloaded incrementally.
+ *
+ * Each reload matches the logical lines of the file against those of the
+ * previous load by hash, only new or changed lines are parsed and only the properties
+ * whose keys changed are converted and validated again, all other values are
+ * reused, so the cost of a reload beyond reading the file depends on the size
+ * of the change. A reload which fails validation leaves the previous values in
+ * place, otherwise the new values of the bound configs replace the previous
+ * values in a single step.
+ *
+ * Created with {@link ConfigBinder#reloadable(Class[])}, the configs can be
+ * read once the first {@link #reload(Reader)} has succeeded.
+ */
+public final class ReloadableConfig implements PropertySource {
+
+	private final ConfigBinder binder;
+	private final Map<Class<?>, Object> configs = new HashMap<Class<?>, Object>();
+	private final List<PropertyDescription> descriptors = new ArrayList<PropertyDescription>();
+	private final Map<String, List<PropertyDescription>> descriptorsByKey = new HashMap<String, List<PropertyDescription>>();
+	private final PropertiesLines lines = new PropertiesLines();
+	private final Object reloadLock = new Object();
+	// converted values, replaced as a whole by each successful load
+	private volatile Map<PropertyDescription, Object> values;
+
+	ReloadableConfig(ConfigBinder binder, Class<?>... types) {
+		this.binder = binder;
+		for (Class<?> type : types) {
+			Map<Method, PropertyDescription> typeDescriptors = binder.extractDescriptors(type);
+			for (PropertyDescription desc : typeDescriptors.values()) {
+				descriptors.add(desc);
+				List<PropertyDescription> forKey = descriptorsByKey.get(desc.getProperty());
+				if (forKey == null) {
+					forKey = new ArrayList<PropertyDescription>();
+					descriptorsByKey.put(desc.getProperty(), forKey);
+				}
+				forKey.add(desc);
+			}
+			configs.put(type, binder.createProxy(type, typeDescriptors, new ConfigBinder.ValueFetcher() {
+
+				@Override
+				public Object fetch(Method method, PropertyDescription desc) {
+					Map<PropertyDescription, Object> current = values;
+					checkState(current != null, "config has not been loaded");
+					return ReloadableConfig.this.binder.copyPropertyValue(desc, current.get(desc));
+				}
+			}, true));
+		}
+	}
+
+	/**
+	 * Reloads a property file, as with {@link java.util.Properties#load(InputStream)}
+	 *
+	 * @param source the property file
+	 * @return the keys which changed
+	 * @throws IOException            if the file cannot be read
+	 * @throws InvalidConfigException if a changed property is not valid
+	 * @see #reload(Reader)
+	 */
+	public Set<String> reload(ByteSource source) throws IOException, InvalidConfigException {
+		checkNotNull(source, "source is required");
+		InputStream in = source.openStream();
+		try {
+			return reload(new InputStreamReader(in, Charsets.ISO_8859_1));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reloads properties, converting and validating the properties which
+	 * have changed since the previous load (or all properties on the first
+	 * load)
+	 *
+	 * @param reader the properties
+	 * @return the keys which changed
+	 * @throws IOException            if the properties cannot be read
+	 * @throws InvalidConfigException if a changed property is not valid
+	 */
+	public Set<String> reload(Reader reader) throws IOException, InvalidConfigException {
+		checkNotNull(reader, "reader is required");
+		synchronized (reloadLock) {
+			Map<PropertyDescription, Object> current = values;
+			PropertiesLines.Changes changes = lines.read(reader);
+			Set<String> changed = changes.getChangedKeys();
+
+			Collection<PropertyDescription> affected;
+			if (current == null) {
+				affected = descriptors;
+			} else {
+				affected = new LinkedHashSet<PropertyDescription>();
+				for (String key : changed) {
+					List<PropertyDescription> forKey = descriptorsByKey.get(key);
+					if (forKey != null) {
+						affected.addAll(forKey);
+					}
+				}
+			}
+
+			Map<PropertyDescription, Object> fetched = binder.fetchAll(affected, changes);
+			Map<PropertyDescription, Object> updated = new HashMap<PropertyDescription, Object>(
+					current != null ? current : Collections.<PropertyDescription, Object> emptyMap());
+			updated.putAll(fetched);
+			Set<String> result = new HashSet<String>(changed);
+			changes.apply();
+			values = updated;
+			return Collections.unmodifiableSet(result);
+		}
+	}
+
+	/**
+	 * @param type one of the interfaces of this config
+	 * @return the config, which always reads the values of the latest successful load
+	 */
+	public <T> T get(Class<T> type) {
+		Object config = configs.get(type);
+		checkArgument(config != null, "%s is not reloadable by this config", type);
+		return type.cast(config);
+	}
+
+	/**
+	 * @return the raw value of a property in the latest successful load, the
+	 *         raw values of a load are updated one property at a time
+	 */
+	@Override
+	public String getProperty(String key) {
+		return lines.getProperty(key);
+	}
+}
@@ -0,0 +1,307 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A property source which polls an HTTP endpoint for its configuration.
+ *
+ * Each poll is a conditional GET sending the ETag of the last payload in an
+ * <code>If-None-Match</code> header. A <code>304 Not Modified</code> response,
+ * or a payload identical to the last one, is neither parsed nor validated.
+ * A changed payload is parsed with a {@link ConfigLoader} and validated
+ * against any configured interfaces on the polling thread, the new values
+ * then replace the previous values in a single step, so a bound method
+ * always reads a property from one complete payload. Invalid payloads are
+ * rejected and the previous values kept, and a rejected payload is not parsed
+ * again until its content changes.
+ *
+ * When a background poll fails the previous values are kept and the next
+ * poll tries again, the failure is available from {@link #getLastFailure()}
+ * and the time of the last successful poll from {@link #getLastSuccessMillis()},
+ * so that stale configuration can be detected.
+ *
+ * Created with {@link #builder(URL)}, call {@link #start()} to load the
+ * initial values and begin polling.
+ */
+public final class RemoteConfigSource implements PropertySource, Closeable {
+
+	private final URL url;
+	private final ConfigLoader loader;
+	private final ConfigBinder binder;
+	private final List<Class<?>> types;
+	private final long intervalNanos;
+	private final int timeoutMillis;
+	private final ScheduledExecutorService executor;
+	private final boolean ownsExecutor;
+
+	private final Object pollLock = new Object();
+	private volatile Map<String, String> values = ImmutableMap.of();
+	private String etag;
+	private HashCode contentHash;
+	private HashCode rejectedHash;
+	private InvalidConfigException rejection;
+	private ScheduledFuture<?> polling;
+	private volatile Exception lastFailure;
+	private volatile long lastSuccessMillis;
+
+	private RemoteConfigSource(Builder builder) {
+		this.url = builder.url;
+		this.loader = builder.loader;
+		this.binder = builder.binder;
+		this.types = ImmutableList.copyOf(builder.types);
+		this.intervalNanos = builder.intervalNanos;
+		this.timeoutMillis = builder.timeoutMillis;
+		this.ownsExecutor = builder.executor == null;
+		this.executor = builder.executor != null ? builder.executor : Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("config-poll-%d").build());
+	}
+
+	/**
+	 * @param url the config endpoint
+	 * @return a builder for a remote source
+	 */
+	public static Builder builder(URL url) {
+		return new Builder(checkNotNull(url, "url is required"));
+	}
+
+	@Override
+	public String getProperty(String key) {
+		return values.get(key);
+	}
+
+	/**
+	 * Loads the initial values and schedules polling
+	 *
+	 * @return this source
+	 * @throws IOException            if the endpoint cannot be read
+	 * @throws InvalidConfigException if the initial payload is not valid
+	 */
+	public synchronized RemoteConfigSource start() throws IOException, InvalidConfigException {
+		checkState(polling == null, "source is already started");
+		poll();
+		polling = executor.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					poll();
+				} catch (IOException e) {
+					// recorded by poll, keep the current values and try again on the next poll
+				} catch (RuntimeException e) {
+					// as above, including invalid payloads
+				}
+			}
+		}, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+		return this;
+	}
+
+	/**
+	 * Polls the endpoint once, replacing the current values if the payload
+	 * has changed
+	 *
+	 * @return true if the values were replaced
+	 * @throws IOException            if the endpoint cannot be read
+	 * @throws InvalidConfigException if a changed payload is not valid
+	 */
+	public boolean poll() throws IOException, InvalidConfigException {
+		// only one poll at a time, so that the ETag and values stay consistent
+		synchronized (pollLock) {
+			try {
+				boolean replaced = fetch();
+				lastFailure = null;
+				lastSuccessMillis = System.currentTimeMillis();
+				return replaced;
+			} catch (IOException e) {
+				lastFailure = e;
+				throw e;
+			} catch (RuntimeException e) {
+				lastFailure = e;
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * @return the failure of the last poll, or null if the last poll succeeded
+	 */
+	public Exception getLastFailure() {
+		return lastFailure;
+	}
+
+	/**
+	 * @return the time in milliseconds since the epoch of the last successful
+	 *         poll, including polls which found the payload unchanged, or 0 if
+	 *         no poll has succeeded
+	 */
+	public long getLastSuccessMillis() {
+		return lastSuccessMillis;
+	}
+
+	private boolean fetch() throws IOException, InvalidConfigException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		try {
+			connection.setConnectTimeout(timeoutMillis);
+			connection.setReadTimeout(timeoutMillis);
+			connection.setUseCaches(false);
+			if (etag != null) {
+				connection.setRequestProperty("If-None-Match", etag);
+			}
+
+			int status = connection.getResponseCode();
+			if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				return false;
+			}
+			if (status != HttpURLConnection.HTTP_OK) {
+				throw new IOException("Unexpected response " + status + " from " + url);
+			}
+			byte[] body;
+			InputStream in = connection.getInputStream();
+			try {
+				body = ByteStreams.toByteArray(in);
+			} finally {
+				in.close();
+			}
+			String newEtag = connection.getHeaderField("ETag");
+
+			HashCode hash = Hashing.murmur3_128().hashBytes(body);
+			if (hash.equals(contentHash)) {
+				etag = newEtag;
+				return false;
+			}
+
+			if (hash.equals(rejectedHash)) {
+				throw rejection;
+			}
+
+			Properties bundle = new Properties();
+			try {
+				loader.load(new ByteArrayInputStream(body), bundle);
+				for (Class<?> type : types) {
+					binder.validate(type, bundle);
+				}
+			} catch (InvalidConfigException e) {
+				// the ETag is not kept, a 304 would otherwise hide the rejection
+				rejectedHash = hash;
+				rejection = e;
+				throw e;
+			}
+			values = Maps.fromProperties(bundle);
+			etag = newEtag;
+			contentHash = hash;
+			return true;
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Stops polling, the current values remain readable
+	 */
+	@Override
+	public synchronized void close() {
+		if (polling != null) {
+			polling.cancel(false);
+		}
+		if (ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Builder for {@link RemoteConfigSource}s
+	 */
+	public static final class Builder {
+		private final URL url;
+		private ConfigLoader loader = new PropertiesConfigLoader();
+		private ConfigBinder binder = new ConfigBinder();
+		private List<Class<?>> types = ImmutableList.of();
+		private long intervalNanos = TimeUnit.SECONDS.toNanos(30);
+		private int timeoutMillis = 10000;
+		private ScheduledExecutorService executor;
+
+		private Builder(URL url) {
+			this.url = url;
+		}
+
+		/**
+		 * Sets the loader used to parse payloads, defaults to a
+		 * {@link PropertiesConfigLoader}
+		 */
+		public Builder loader(ConfigLoader loader) {
+			this.loader = checkNotNull(loader, "loader is required");
+			return this;
+		}
+
+		/**
+		 * Sets the interfaces each changed payload is validated against before
+		 * it replaces the current values
+		 *
+		 * @param binder the binder used to validate payloads
+		 * @param types  the interfaces
+		 */
+		public Builder validate(ConfigBinder binder, Class<?>... types) {
+			this.binder = checkNotNull(binder, "binder is required");
+			this.types = Arrays.asList(types.clone());
+			return this;
+		}
+
+		/**
+		 * Sets the delay between polls, defaults to 30 seconds
+		 */
+		public Builder interval(long duration, TimeUnit unit) {
+			checkArgument(duration > 0, "duration must be positive");
+			this.intervalNanos = checkNotNull(unit, "unit is required").toNanos(duration);
+			return this;
+		}
+
+		/**
+		 * Sets the connect and read timeouts of each poll, defaults to 10 seconds.
+		 * Timeouts of less than a millisecond are rounded up to one millisecond,
+		 * as a timeout of zero waits forever.
+		 */
+		public Builder timeout(long duration, TimeUnit unit) {
+			checkArgument(duration > 0, "duration must be positive");
+			long millis = checkNotNull(unit, "unit is required").toMillis(duration);
+			this.timeoutMillis = (int) Math.max(1, Math.min(Integer.MAX_VALUE, millis));
+			return this;
+		}
+
+		/**
+		 * Sets the executor on which polls run, defaults to a single daemon
+		 * thread which is shut down when the source is closed
+		 */
+		public Builder executor(ScheduledExecutorService executor) {
+			this.executor = checkNotNull(executor, "executor is required");
+			return this;
+		}
+
+		public RemoteConfigSource build() {
+			return new RemoteConfigSource(this);
+		}
+	}
+}
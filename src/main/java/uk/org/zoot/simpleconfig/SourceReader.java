@@ -0,0 +1,89 @@
+package uk.org.zoot.simpleconfig;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Character reader with a single character of look-ahead and line tracking,
+ * shared by the streaming {@link ConfigLoader} implementations
+ */
+final class SourceReader {
+
+	static final int EOF = -1;
+
+	private final Reader in;
+	private int lookAhead;
+	private boolean hasLookAhead;
+	private boolean afterLine;
+	private int line = 1;
+	private int column = 0;
+
+	SourceReader(Reader reader) {
+		this.in = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+	}
+
+	/**
+	 * @return the next character without consuming it, or {@link #EOF}
+	 */
+	int peek() throws IOException {
+		if (!hasLookAhead) {
+			lookAhead = in.read();
+			hasLookAhead = true;
+		}
+		return lookAhead;
+	}
+
+	/**
+	 * @return the next character, or {@link #EOF}
+	 */
+	int read() throws IOException {
+		int c = peek();
+		hasLookAhead = false;
+		if (c == '\n') {
+			line++;
+			column = 0;
+		} else if (c != EOF) {
+			column++;
+		}
+		return c;
+	}
+
+	/**
+	 * Reads the remainder of the current line, without the line terminator.
+	 *
+	 * The terminator is consumed by the following call so that errors raised
+	 * while processing a line report that line.
+	 *
+	 * @return the line, or null at the end of the input
+	 */
+	String readLine() throws IOException {
+		if (afterLine && peek() == '\n') {
+			read();
+		}
+		afterLine = false;
+		if (peek() == EOF) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = peek()) != EOF && c != '\n') {
+			read();
+			if (c != '\r') {
+				sb.append((char) c);
+			}
+		}
+		afterLine = true;
+		return sb.toString();
+	}
+
+	/**
+	 * Creates a parse error pointing at the current position
+	 *
+	 * @param message
+	 * @return an exception to throw
+	 */
+	InvalidConfigException error(String message) {
+		return new InvalidConfigException(String.format("%s at line %d, column %d", message, line, column));
+	}
+}
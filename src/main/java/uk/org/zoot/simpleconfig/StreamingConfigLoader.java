@@ -0,0 +1,31 @@
+package uk.org.zoot.simpleconfig;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Properties;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Base for loaders which tokenize their input and emit flattened keys through
+ * a {@link PropertyFlattener}
+ */
+abstract class StreamingConfigLoader extends ConfigLoader {
+
+	@Override
+	public void load(Reader reader, Properties target) throws IOException {
+		checkNotNull(reader, "reader is required");
+		checkNotNull(target, "target is required");
+		parse(new SourceReader(reader), new PropertyFlattener(target, replacesOverriddenValues()));
+	}
+
+	/**
+	 * @return true if a value replaces the values under its key written
+	 *         earlier in the document, and an object replaces a value at its key
+	 */
+	boolean replacesOverriddenValues() {
+		return false;
+	}
+
+	abstract void parse(SourceReader in, PropertyFlattener out) throws IOException;
+}
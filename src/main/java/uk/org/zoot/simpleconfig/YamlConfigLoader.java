@@ -0,0 +1,284 @@
+package uk.org.zoot.simpleconfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming, line-oriented loader for the block subset of YAML used for
+ * configuration files.
+ *
+ * Supports a single document of nested block mappings and block sequences
+ * (including sequences of mappings), plain, single and double quoted scalars,
+ * single-line flow sequences (<code>[a, b]</code>) and comments.
+ *
+ * Anchors, aliases, tags, block scalars, flow mappings and multiple documents
+ * are not supported and are reported as errors.
+ */
+public class YamlConfigLoader extends StreamingConfigLoader {
+
+	private static final class Block {
+		final int indent;
+		final boolean sequence;
+
+		Block(int indent, boolean sequence) {
+			this.indent = indent;
+			this.sequence = sequence;
+		}
+	}
+
+	@Override
+	void parse(SourceReader in, PropertyFlattener out) throws IOException {
+		List<Block> blocks = new ArrayList<Block>();
+		blocks.add(new Block(-1, false));
+		String pendingKey = null;
+		int pendingIndent = -1;
+		boolean started = false;
+
+		String line;
+		while ((line = in.readLine()) != null) {
+			int indent = 0;
+			while (indent < line.length() && line.charAt(indent) == ' ') {
+				indent++;
+			}
+			String content = stripComment(line.substring(indent)).trim();
+			if (content.length() == 0) {
+				continue;
+			}
+			if (indent < line.length() && line.charAt(indent) == '\t') {
+				throw in.error("Tabs are not allowed for indentation");
+			}
+			if (indent == 0 && content.equals("---")) {
+				if (started) {
+					throw in.error("Multiple documents are not supported");
+				}
+				continue;
+			}
+			if (indent == 0 && content.equals("...")) {
+				break;
+			}
+			started = true;
+			boolean item = isSequenceItem(content);
+
+			if (pendingKey != null) {
+				if (indent > pendingIndent || (item && indent == pendingIndent)) {
+					if (item) {
+						out.beginArray(pendingKey);
+					} else {
+						out.beginObject(pendingKey);
+					}
+					blocks.add(new Block(indent, item));
+				}
+				pendingKey = null;
+			}
+
+			// blocks.get(1) is the top level mapping, which has no matching begin event
+			Block top = blocks.get(blocks.size() - 1);
+			while (blocks.size() > 2 && (top.indent > indent || (top.indent == indent && top.sequence && !item))) {
+				out.end();
+				blocks.remove(blocks.size() - 1);
+				top = blocks.get(blocks.size() - 1);
+			}
+			if (blocks.size() == 1) {
+				if (item) {
+					throw in.error("The top level of the document must be a mapping");
+				}
+				top = new Block(indent, false);
+				blocks.add(top);
+			} else if (top.indent != indent) {
+				throw in.error("Unexpected indentation");
+			}
+
+			if (top.sequence != item) {
+				throw in.error(item ? "Unexpected sequence item in mapping" : "Expected a sequence item");
+			}
+			if (item) {
+				String itemContent = content.substring(1).trim();
+				if (itemContent.length() == 0) {
+					throw in.error("Empty sequence items are not supported");
+				}
+				if (isSequenceItem(itemContent)) {
+					throw in.error("Nested sequences are not supported");
+				}
+				int colon = findKeySeparator(itemContent);
+				if (colon < 0) {
+					out.scalar(null, parseScalar(in, itemContent));
+					continue;
+				}
+				// a mapping nested in a sequence item starts at the item's content
+				indent = line.indexOf(itemContent, indent + 1);
+				out.beginObject(null);
+				blocks.add(new Block(indent, false));
+				content = itemContent;
+			}
+
+			int colon = findKeySeparator(content);
+			if (colon < 0) {
+				throw in.error("Expected 'key: value'");
+			}
+			String key = unquote(in, content.substring(0, colon).trim());
+			String value = content.substring(colon + 1).trim();
+			if (value.length() == 0) {
+				pendingKey = key;
+				pendingIndent = indent;
+			} else if (value.startsWith("[")) {
+				parseFlowSequence(in, out, key, value);
+			} else {
+				out.scalar(key, parseScalar(in, value));
+			}
+		}
+		while (blocks.size() > 1) {
+			blocks.remove(blocks.size() - 1);
+			if (blocks.size() > 1) {
+				out.end();
+			}
+		}
+	}
+
+	private static boolean isSequenceItem(String content) {
+		return content.equals("-") || content.startsWith("- ");
+	}
+
+	/**
+	 * @return the index of the ':' separating a key from its value, or -1
+	 */
+	private static int findKeySeparator(String content) {
+		char quote = 0;
+		for (int i = 0; i < content.length(); i++) {
+			char c = content.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (i == 0 && (c == '"' || c == '\'')) {
+				quote = c;
+			} else if (c == ':' && (i + 1 == content.length() || content.charAt(i + 1) == ' ')) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String stripComment(String content) {
+		char quote = 0;
+		for (int i = 0; i < content.length(); i++) {
+			char c = content.charAt(i);
+			if (quote != 0) {
+				if (c == '\\' && quote == '"') {
+					i++;
+				} else if (c == quote) {
+					quote = 0;
+				}
+			} else if ((c == '"' || c == '\'') && (i == 0 || " [,:-".indexOf(content.charAt(i - 1)) >= 0)) {
+				quote = c;
+			} else if (c == '#' && (i == 0 || content.charAt(i - 1) == ' ')) {
+				return content.substring(0, i);
+			}
+		}
+		return content;
+	}
+
+	private void parseFlowSequence(SourceReader in, PropertyFlattener out, String key, String value) {
+		if (!value.endsWith("]")) {
+			throw in.error("Flow sequences must be closed on the same line");
+		}
+		out.beginArray(key);
+		String body = value.substring(1, value.length() - 1).trim();
+		if (body.length() > 0) {
+			int start = 0;
+			char quote = 0;
+			for (int i = 0; i <= body.length(); i++) {
+				char c = i < body.length() ? body.charAt(i) : ',';
+				if (quote != 0) {
+					if (c == quote) {
+						quote = 0;
+					}
+				} else if (c == '"' || c == '\'') {
+					quote = c;
+				} else if (c == '[' || c == '{') {
+					throw in.error("Nested flow collections are not supported");
+				} else if (c == ',') {
+					String element = body.substring(start, i).trim();
+					if (element.length() == 0) {
+						throw in.error("Empty flow sequence element");
+					}
+					out.scalar(null, parseScalar(in, element));
+					start = i + 1;
+				}
+			}
+		}
+		out.end();
+	}
+
+	private String parseScalar(SourceReader in, String value) {
+		char first = value.charAt(0);
+		if (first == '&' || first == '*' || first == '!') {
+			throw in.error("Anchors, aliases and tags are not supported");
+		} else if (first == '|' || first == '>') {
+			throw in.error("Block scalars are not supported");
+		} else if (first == '{' || first == '[') {
+			throw in.error("Nested flow collections are not supported");
+		}
+		if (value.equals("~") || value.equals("null") || value.equals("Null") || value.equals("NULL")) {
+			return null;
+		}
+		return unquote(in, value);
+	}
+
+	private String unquote(SourceReader in, String value) {
+		if (value.length() == 0) {
+			return value;
+		}
+		char quote = value.charAt(0);
+		if (quote != '"' && quote != '\'') {
+			return value;
+		}
+		if (value.length() < 2 || value.charAt(value.length() - 1) != quote) {
+			throw in.error("Unterminated quoted string");
+		}
+		String body = value.substring(1, value.length() - 1);
+		if (quote == '\'') {
+			return body.replace("''", "'");
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < body.length(); i++) {
+			char c = body.charAt(i);
+			if (c == '\\' && i + 1 < body.length()) {
+				char e = body.charAt(++i);
+				switch (e) {
+				case 'n':
+					sb.append('\n');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				case '0':
+					sb.append('\0');
+					break;
+				case 'u':
+					if (i + 4 >= body.length()) {
+						throw in.error("Invalid unicode escape");
+					}
+					int code = 0;
+					for (int j = 0; j < 4; j++) {
+						int digit = Character.digit(body.charAt(++i), 16);
+						if (digit < 0) {
+							throw in.error("Invalid unicode escape");
+						}
+						code = code * 16 + digit;
+					}
+					sb.append((char) code);
+					break;
+				default:
+					sb.append(e);
+				}
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
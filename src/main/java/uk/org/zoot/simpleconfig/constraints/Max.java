@@ -0,0 +1,24 @@
+package uk.org.zoot.simpleconfig.constraints;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The value of a numeric property must be less than or equal to the
+ * specified maximum, applies to each value of multi-valued properties
+ *
+ * @see uk.org.zoot.simpleconfig.ConfigBinder#validate(Class, java.util.Properties)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Max {
+
+    /**
+     * @return the maximum value (inclusive)
+     */
+    long value();
+}
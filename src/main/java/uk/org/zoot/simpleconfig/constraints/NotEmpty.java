@@ -0,0 +1,19 @@
+package uk.org.zoot.simpleconfig.constraints;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A string property must not be null or empty, a multi-valued property must
+ * have at least one value
+ *
+ * @see uk.org.zoot.simpleconfig.ConfigBinder#validate(Class, java.util.Properties)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface NotEmpty {
+}
@@ -0,0 +1,29 @@
+package uk.org.zoot.simpleconfig.constraints;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The length of a string property, or the number of values of a
+ * multi-valued property, must be within the specified bounds
+ *
+ * @see uk.org.zoot.simpleconfig.ConfigBinder#validate(Class, java.util.Properties)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Size {
+
+    /**
+     * @return the minimum size (inclusive)
+     */
+    int min() default 0;
+
+    /**
+     * @return the maximum size (inclusive)
+     */
+    int max() default Integer.MAX_VALUE;
+}
@@ -0,0 +1,32 @@
+package jakarta.validation.constraints;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * The attributes of the Bean Validation <code>Pattern</code> read by
+ * simpleconfig, so that recognition by name can be tested without a Bean
+ * Validation dependency
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Pattern {
+
+    String regexp();
+
+    Flag[] flags() default {};
+
+    enum Flag {
+        CASE_INSENSITIVE(java.util.regex.Pattern.CASE_INSENSITIVE),
+        DOTALL(java.util.regex.Pattern.DOTALL);
+
+        private final int value;
+
+        Flag(int value) {
+            this.value = value;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+}
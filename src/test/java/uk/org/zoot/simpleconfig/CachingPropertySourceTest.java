@@ -0,0 +1,300 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CachingPropertySourceTest {
+
+    static class FakeSource implements PropertySource {
+        final Map<String, String> values = new HashMap<String, String>();
+        int reads;
+        boolean failing;
+
+        @Override
+        public String getProperty(String key) {
+            reads++;
+            if (failing) {
+                throw new IllegalStateException("source unavailable");
+            }
+            return values.get(key);
+        }
+    }
+
+    static class FakeTicker extends Ticker {
+        long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+    }
+
+    static class QueuedExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            List<Runnable> pending = new ArrayList<Runnable>(tasks);
+            tasks.clear();
+            for (Runnable task : pending) {
+                task.run();
+            }
+        }
+    }
+
+    static class BlockingSource implements PropertySource {
+        final AtomicInteger reads = new AtomicInteger();
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String getProperty(String key) {
+            reads.incrementAndGet();
+            reading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return "v" + reads.get();
+        }
+    }
+
+    public interface SidecarProps {
+        @ConfigProperty("sidecar.port")
+        public int port();
+    }
+
+    FakeSource source = new FakeSource();
+    FakeTicker ticker = new FakeTicker();
+    QueuedExecutor executor = new QueuedExecutor();
+
+    CachingPropertySource.Builder builder = CachingPropertySource.builder(source)
+            .ttl(10, TimeUnit.SECONDS).executor(executor).ticker(ticker);
+
+    @Test
+    public void servesCachedValuesWithinTtl() {
+        source.values.put("a", "1");
+        CachingPropertySource cache = builder.build();
+
+        assertEquals("1", cache.getProperty("a"));
+        ticker.advance(5, TimeUnit.SECONDS);
+        source.values.put("a", "2");
+        assertEquals("1", cache.getProperty("a"));
+        assertNull(cache.getProperty("missing"));
+        assertNull(cache.getProperty("missing"));
+        assertEquals(2, source.reads);
+    }
+
+    @Test
+    public void refreshesAheadOfExpiryWithoutBlockingReaders() {
+        source.values.put("a", "1");
+        CachingPropertySource cache = builder.build();
+        cache.getProperty("a");
+
+        ticker.advance(8, TimeUnit.SECONDS);
+        source.values.put("a", "2");
+        assertEquals("1", cache.getProperty("a"));
+        assertEquals("1", cache.getProperty("a"));
+        assertEquals(1, executor.tasks.size());
+
+        executor.runAll();
+        assertEquals("2", cache.getProperty("a"));
+
+        ticker.advance(8, TimeUnit.SECONDS);
+        assertEquals("2", cache.getProperty("a"));
+        assertEquals(2, source.reads);
+    }
+
+    @Test
+    public void reloadsExpiredValuesSynchronously() {
+        source.values.put("a", "1");
+        CachingPropertySource cache = builder.build();
+        cache.getProperty("a");
+
+        ticker.advance(11, TimeUnit.SECONDS);
+        source.values.put("a", "2");
+        assertEquals("2", cache.getProperty("a"));
+        assertTrue(executor.tasks.isEmpty());
+    }
+
+    @Test
+    public void servesStaleValuesWhenSourceFails() {
+        source.values.put("a", "1");
+        CachingPropertySource cache = builder.build();
+        cache.getProperty("a");
+
+        source.failing = true;
+        ticker.advance(8, TimeUnit.SECONDS);
+        assertEquals("1", cache.getProperty("a"));
+        executor.runAll();
+        assertEquals("1", cache.getProperty("a"));
+
+        ticker.advance(20, TimeUnit.SECONDS);
+        assertEquals("1", cache.getProperty("a"));
+        int reads = source.reads;
+        assertEquals("1", cache.getProperty("a"));
+        assertEquals("subsequent reads should not wait on the failing source", reads, source.reads);
+
+        source.failing = false;
+        source.values.put("a", "2");
+        executor.runAll();
+        assertEquals("2", cache.getProperty("a"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void propagatesFailuresWithoutPreviousValue() {
+        source.failing = true;
+        builder.build().getProperty("a");
+    }
+
+    @Test
+    public void appliesPerKeyAndPerInterfaceTtls() {
+        source.values.put("sidecar.port", "80");
+        source.values.put("a", "1");
+        CachingPropertySource cache = builder.ttl("a", 1, TimeUnit.HOURS)
+                .ttl(SidecarProps.class, 1, TimeUnit.SECONDS).build();
+        cache.getProperty("a");
+        cache.getProperty("sidecar.port");
+
+        ticker.advance(30, TimeUnit.SECONDS);
+        source.values.put("a", "2");
+        source.values.put("sidecar.port", "81");
+        assertEquals("1", cache.getProperty("a"));
+        assertEquals("81", cache.getProperty("sidecar.port"));
+    }
+
+    @Test
+    public void evictsWhenFull() {
+        CachingPropertySource cache = builder.maximumSize(1).build();
+        cache.getProperty("a");
+        cache.getProperty("b");
+        cache.getProperty("a");
+        assertEquals(3, source.reads);
+    }
+
+    @Test
+    public void invalidateForcesReload() {
+        CachingPropertySource cache = builder.build();
+        cache.getProperty("a");
+        cache.invalidateAll();
+        cache.getProperty("a");
+        assertEquals(2, source.reads);
+    }
+
+    @Test
+    public void canBindToCachingSource() {
+        source.values.put("sidecar.port", "8080");
+        SidecarProps props = new ConfigBinder().bindAndValidate(SidecarProps.class, builder.build());
+        assertEquals(8080, props.port());
+        assertEquals(8080, props.port());
+        assertEquals(1, source.reads);
+    }
+
+    @Test
+    public void concurrentReadersOfAColdKeyShareOneRead() throws Exception {
+        BlockingSource blocking = new BlockingSource();
+        final CachingPropertySource cache = CachingPropertySource.builder(blocking)
+                .ttl(10, TimeUnit.SECONDS).executor(executor).ticker(ticker).build();
+        ExecutorService readers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(readers.submit(new Callable<String>() {
+
+                    @Override
+                    public String call() {
+                        return cache.getProperty("a");
+                    }
+                }));
+            }
+            blocking.reading.await();
+            Thread.sleep(100);
+            blocking.release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("v1", result.get());
+            }
+            assertEquals(1, blocking.reads.get());
+        } finally {
+            readers.shutdown();
+        }
+    }
+
+    @Test
+    public void waitsBeforeRetryingAFailedRefresh() {
+        source.values.put("a", "1");
+        CachingPropertySource cache = builder.build();
+        cache.getProperty("a");
+
+        source.failing = true;
+        ticker.advance(8, TimeUnit.SECONDS);
+        cache.getProperty("a");
+        executor.runAll();
+        assertEquals(2, source.reads);
+
+        // refresh ahead at 0.75 of 10s, so retries wait 2.5s
+        ticker.advance(2, TimeUnit.SECONDS);
+        assertEquals("1", cache.getProperty("a"));
+        assertEquals("1", cache.getProperty("a"));
+        assertTrue(executor.tasks.isEmpty());
+
+        ticker.advance(1, TimeUnit.SECONDS);
+        assertEquals("1", cache.getProperty("a"));
+        assertEquals("1", cache.getProperty("a"));
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals(3, source.reads);
+        assertTrue(executor.tasks.isEmpty());
+    }
+
+    @Test
+    public void keepsServingWhenRefreshIsRejected() {
+        final boolean[] rejecting = { true };
+        source.values.put("a", "1");
+        CachingPropertySource cache = builder.executor(new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                if (rejecting[0]) {
+                    throw new RejectedExecutionException("busy");
+                }
+                executor.execute(command);
+            }
+        }).build();
+        cache.getProperty("a");
+
+        ticker.advance(8, TimeUnit.SECONDS);
+        source.values.put("a", "2");
+        assertEquals("1", cache.getProperty("a"));
+
+        rejecting[0] = false;
+        assertEquals("1", cache.getProperty("a"));
+        assertEquals("a rejected refresh is attempted again", 1, executor.tasks.size());
+        executor.runAll();
+        assertEquals("2", cache.getProperty("a"));
+    }
+}
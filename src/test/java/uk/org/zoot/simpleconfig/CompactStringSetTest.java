@@ -0,0 +1,176 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.base.Joiner;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public class CompactStringSetTest {
+
+    public interface AllowlistProps {
+        @ConfigProperty("allowed")
+        public Set<String> allowed();
+
+        @ConfigProperty(value = "small", defaultValue = "a,b")
+        public Set<String> small();
+    }
+
+    static List<String> values(int count) {
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            values.add("user-" + (i * 7919 % count));
+        }
+        return values;
+    }
+
+    @Test
+    public void containsExactlyTheGivenValues() {
+        List<String> values = values(5000);
+        CompactStringSet set = CompactStringSet.copyOf(values);
+
+        assertEquals(5000, set.size());
+        for (String value : values) {
+            assertTrue(value, set.contains(value));
+        }
+        assertFalse(set.contains("user-5000"));
+        assertFalse(set.contains("user-"));
+        assertFalse(set.contains("user-10x"));
+        assertFalse(set.contains(""));
+        assertFalse(set.contains(null));
+        assertFalse(set.contains(42));
+        assertEquals(new HashSet<String>(values), set);
+        assertEquals(new HashSet<String>(values).hashCode(), set.hashCode());
+    }
+
+    @Test
+    public void removesDuplicatesAndIteratesInOrder() {
+        CompactStringSet set = CompactStringSet.copyOf(Arrays.asList("b", "", "a", "b", "ab"));
+
+        assertEquals(4, set.size());
+        assertThat(new ArrayList<String>(set), equalTo(Arrays.asList("", "a", "ab", "b")));
+        assertTrue(set.contains(""));
+        assertTrue(CompactStringSet.copyOf(new ArrayList<String>()).isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void isReadOnly() {
+        CompactStringSet.copyOf(Arrays.asList("a")).add("b");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void iteratorIsReadOnly() {
+        Iterator<String> it = CompactStringSet.copyOf(Arrays.asList("a")).iterator();
+        it.next();
+        it.remove();
+    }
+
+    @Test
+    public void largeSetPropertiesAreBoundOnce() {
+        List<String> values = values(ConfigBinder.COMPACT_SET_THRESHOLD * 4);
+        Properties properties = new ConfigBinderTest.PropertyBuilder()
+                .withProperty("allowed", Joiner.on(',').join(values)).build();
+        AllowlistProps props = new ConfigBinder().bindAndValidate(AllowlistProps.class, properties);
+
+        assertThat(props.allowed(), instanceOf(CompactStringSet.class));
+        assertSame(props.allowed(), props.allowed());
+        assertTrue(props.allowed().contains(values.get(17)));
+        assertFalse(props.allowed().contains("user-x"));
+
+        properties.setProperty("allowed", "user-x");
+        assertEquals(new HashSet<String>(Arrays.asList("user-x")), props.allowed());
+    }
+
+    @Test
+    public void setPropertiesAreReadOnlyWhateverTheirSize() {
+        for (int size : new int[] { 1, ConfigBinder.COMPACT_SET_THRESHOLD - 1, ConfigBinder.COMPACT_SET_THRESHOLD }) {
+            AllowlistProps props = new ConfigBinder().bind(AllowlistProps.class, new ConfigBinderTest.PropertyBuilder()
+                    .withProperty("allowed", Joiner.on(',').join(values(size))).build());
+            try {
+                props.allowed().add("user-x");
+                fail("expected a read-only set of " + size + " values");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+            assertEquals(size, props.allowed().size());
+        }
+    }
+
+    /**
+     * Prints the retained heap and contains() cost of a compact set against a
+     * HashSet, run manually as it depends on the JVM and machine
+     */
+    @Test
+    @Ignore("measurement, run manually")
+    public void measureMemoryAndLookups() {
+        int count = 50000;
+        List<String> values = values(count);
+        List<String> probes = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            probes.add(new String(values.get(i)));
+            probes.add("other-" + i);
+        }
+
+        long before = usedHeap();
+        Set<String> compact = CompactStringSet.copyOf(values);
+        long compactBytes = usedHeap() - before;
+
+        before = usedHeap();
+        Set<String> hashSet = new HashSet<String>();
+        for (String value : values) {
+            // parsed values each own their characters
+            hashSet.add(new String(value.toCharArray()));
+        }
+        long hashSetBytes = usedHeap() - before;
+
+        System.out.printf("%d values, HashSet %d bytes, CompactStringSet %d bytes%n", count, hashSetBytes, compactBytes);
+        for (int round = 0; round < 5; round++) {
+            System.out.printf("contains() HashSet %.1f ns, CompactStringSet %.1f ns%n",
+                    nanosPerLookup(hashSet, probes), nanosPerLookup(compact, probes));
+        }
+        assertEquals(hashSet.size(), compact.size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // collect until the used heap stops shrinking
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+        return used;
+    }
+
+    private static double nanosPerLookup(Set<String> set, List<String> probes) {
+        int found = 0;
+        int lookups = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            for (String probe : probes) {
+                if (set.contains(probe)) {
+                    found++;
+                }
+                lookups++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(lookups / 2, found);
+        return (double) elapsed / lookups;
+    }
+}
@@ -0,0 +1,98 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ClassToInstanceMap;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Futures;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public class ConfigBinderAsyncTest {
+
+    public interface DbProps {
+        @ConfigProperty("db.url")
+        public String url();
+    }
+
+    public interface HttpProps {
+        @ConfigProperty("http.port")
+        public int port();
+    }
+
+    ConfigBinder binder = new ConfigBinder();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static ByteSource source(String content) {
+        return ByteStreams.asByteSource(content.getBytes(Charsets.ISO_8859_1));
+    }
+
+    @Test
+    public void loadsAndMergesSourcesInOrder() throws Exception {
+        Properties bundle = binder.loadAsync(new PropertiesConfigLoader(),
+                Arrays.asList(source("a=1\nb=1\n"), source("b=2\n")), executor).get();
+
+        assertEquals("1", bundle.getProperty("a"));
+        assertEquals("2", bundle.getProperty("b"));
+    }
+
+    @Test
+    public void bindsAllInterfaces() throws Exception {
+        ClassToInstanceMap<Object> configs = binder.bindAllAsync(
+                binder.loadAsync(new PropertiesConfigLoader(),
+                        Arrays.asList(source("db.url=jdbc:x\n"), source("http.port=80\n")), executor),
+                executor, DbProps.class, HttpProps.class).get();
+
+        assertEquals("jdbc:x", configs.getInstance(DbProps.class).url());
+        assertEquals(80, configs.getInstance(HttpProps.class).port());
+    }
+
+    @Test
+    public void aggregatesValidationErrorsOfAllInterfaces() throws Exception {
+        try {
+            binder.bindAllAsync(Futures.immediateFuture(new Properties()), executor,
+                    DbProps.class, HttpProps.class).get();
+            fail("should have failed validation");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(InvalidConfigException.class));
+            assertThat(e.getCause().getMessage(), containsString("{ db.url : Property db.url is required but not set }"));
+            assertThat(e.getCause().getMessage(), containsString("{ http.port : Property http.port is required but not set }"));
+        }
+    }
+
+    @Test
+    public void propagatesLoadFailures() throws Exception {
+        ByteSource broken = new ByteSource() {
+
+            @Override
+            public InputStream openStream() throws IOException {
+                throw new IOException("unreadable");
+            }
+        };
+        try {
+            binder.bindAsync(DbProps.class, binder.loadAsync(new PropertiesConfigLoader(),
+                    Arrays.asList(source("db.url=x\n"), broken), executor), executor).get();
+            fail("should have failed to load");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IOException.class));
+        }
+    }
+}
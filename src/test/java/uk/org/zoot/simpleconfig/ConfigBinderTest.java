@@ -2,6 +2,11 @@ package uk.org.zoot.simpleconfig;
 
 import org.hamcrest.CoreMatchers;
 import org.junit.Test;
+import uk.org.zoot.simpleconfig.constraints.Max;
+import uk.org.zoot.simpleconfig.constraints.Min;
+import uk.org.zoot.simpleconfig.constraints.NotEmpty;
+import uk.org.zoot.simpleconfig.constraints.Pattern;
+import uk.org.zoot.simpleconfig.constraints.Size;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
@@ -94,6 +99,39 @@ public class ConfigBinderTest {
 
 	}
 
+    public interface ConstrainedProps {
+        @ConfigProperty(value = "port", defaultValue = "8080")
+        @Min(1)
+        @Max(65535)
+        public int port();
+
+        @ConfigProperty(value = "name", required = false)
+        @Pattern("[a-z]+")
+        @Size(max = 8)
+        public String name();
+
+        @ConfigProperty(value = "ports", required = false)
+        @Min(1)
+        public int[] ports();
+
+        @ConfigProperty("hosts")
+        @NotEmpty
+        public List<String> hosts();
+    }
+
+    public interface BeanValidationProps {
+        @ConfigProperty("code")
+        @jakarta.validation.constraints.Pattern(regexp = "abc",
+                flags = jakarta.validation.constraints.Pattern.Flag.CASE_INSENSITIVE)
+        public String code();
+    }
+
+    public interface InvalidConstraintProps {
+        @ConfigProperty("name")
+        @Min(1)
+        public String name();
+    }
+
     @Test
     public void canLoadSimpleStringPropertyWithNoAnnotation() {
         SimpleProps props = binder.bind(SimpleProps.class,
@@ -324,6 +362,85 @@ public class ConfigBinderTest {
     }
 
 
+    @Test
+    public void canValidateConstraints() {
+        binder.validate(ConstrainedProps.class, new PropertyBuilder()
+                .withProperty("name", "abc").withProperty("hosts", "h1").build());
+
+        try {
+            binder.validate(ConstrainedProps.class, new PropertyBuilder()
+                    .withProperty("port", "0").withProperty("name", "ABC").build());
+            fail("should have failed validation");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("{ port : Property port value 0 is less than the minimum 1 }"));
+            assertThat(e.getMessage(), containsString("{ name : Property name value ABC does not match [a-z]+ }"));
+            assertThat(e.getMessage(), containsString("{ hosts : Property hosts is required but not set }"));
+        }
+    }
+
+    @Test
+    public void constraintsApplyToEachValueOfMultiValuedProperties() {
+        try {
+            binder.validate(ConstrainedProps.class, new PropertyBuilder()
+                    .withProperty("hosts", ",").build());
+            fail("should have failed validation");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("{ hosts : Property hosts must not be empty }"));
+        }
+        try {
+            binder.validate(ConstrainedProps.class, new PropertyBuilder()
+                    .withProperty("hosts", "a").withProperty("ports", "1,0").build());
+            fail("should have failed validation");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("{ ports : Property ports value 0 is less than the minimum 1 }"));
+        }
+    }
+
+    @Test
+    public void beanValidationPatternsApplyTheirFlags() {
+        assertEquals("ABC", binder.bindAndValidate(BeanValidationProps.class, new PropertyBuilder()
+                .withProperty("code", "ABC").build()).code());
+        try {
+            binder.validate(BeanValidationProps.class, new PropertyBuilder().withProperty("code", "abd").build());
+            fail("should have failed validation");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("does not match abc"));
+        }
+    }
+
+    @Test(expected = InvalidConfigException.class)
+    public void constraintsAreCheckedOnRead() {
+        binder.bind(ConstrainedProps.class, new PropertyBuilder()
+                .withProperty("name", "waytoolongname").build()).name();
+    }
+
+    @Test
+    public void optionalConstrainedPropertiesMayBeUnset() {
+        ConstrainedProps props = binder.bind(ConstrainedProps.class, new PropertyBuilder().build());
+        assertNull(props.name());
+        assertEquals(8080, props.port());
+    }
+
+    @Test
+    public void failsWhenConstraintDoesNotApplyToType() {
+        try {
+            binder.extractDescriptors(InvalidConstraintProps.class);
+            fail("should have thrown a binding exception");
+        } catch (InvalidConfigInterfaceException e) {
+            assertThat(e.getMessage(), containsString("@Min"));
+        }
+    }
+
+    @Test
+    public void areConstraintsShownInPropertyDescription() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(bos);
+        binder.printPropertyDescription(ps, ConstrainedProps.class);
+        ps.flush();
+        String desc = new String(bos.toByteArray());
+        assertThat(desc, containsString("port :  (required,min=1,max=65535)"));
+    }
+
 	@Test
 	public void canLoadListOfStringProperties(){
 		SimpleProps props = binder.bind(SimpleProps.class,
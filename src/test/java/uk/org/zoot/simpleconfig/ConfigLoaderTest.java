@@ -0,0 +1,214 @@
+package uk.org.zoot.simpleconfig;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public class ConfigLoaderTest {
+
+    public interface ServerProps {
+        @ConfigProperty("db.url")
+        public String dbUrl();
+
+        @ConfigProperty("db.connectTimeout")
+        public int connectTimeout();
+
+        @ConfigProperty("hosts")
+        public List<String> hosts();
+
+        @ConfigProperty(value = "flags", required = false)
+        public String[] flags();
+    }
+
+    ConfigBinder binder = new ConfigBinder();
+
+    private static Properties load(ConfigLoader loader, String content) throws IOException {
+        return loader.load(new StringReader(content));
+    }
+
+    @Test
+    public void canLoadJson() throws IOException {
+        Properties p = load(new JsonConfigLoader(),
+                "{ \"db\" : { \"url\" : \"jdbc:mydb/test\", \"connectTimeout\" : 1000 },\n"
+                        + "  \"hosts\" : [\"a\", \"b\"], \"flags\" : [], \"unset\" : null }");
+
+        ServerProps props = binder.bindAndValidate(ServerProps.class, p);
+        assertEquals("jdbc:mydb/test", props.dbUrl());
+        assertEquals(1000, props.connectTimeout());
+        assertThat(props.hosts(), equalTo(Arrays.asList("a", "b")));
+        assertArrayEquals(new String[0], props.flags());
+        assertFalse(p.containsKey("unset"));
+    }
+
+    @Test
+    public void canLoadJsonStringEscapes() throws IOException {
+        Properties p = load(new JsonConfigLoader(), "{\"a\":\"x\\\"y\\u0041\\n\"}");
+        assertEquals("x\"yA\n", p.getProperty("a"));
+    }
+
+    @Test
+    public void indexesArraysOfObjects() throws IOException {
+        Properties p = load(new JsonConfigLoader(),
+                "{\"servers\":[{\"host\":\"a\",\"port\":1},{\"host\":\"b\",\"ports\":[2,3]}]}");
+        assertEquals("a", p.getProperty("servers.0.host"));
+        assertEquals("1", p.getProperty("servers.0.port"));
+        assertEquals("b", p.getProperty("servers.1.host"));
+        assertEquals("2,3", p.getProperty("servers.1.ports"));
+        assertFalse(p.containsKey("servers"));
+    }
+
+    @Test
+    public void reportsJsonSyntaxErrorsWithPosition() throws IOException {
+        try {
+            load(new JsonConfigLoader(), "{\n\"a\" : 1,\n\"b\" 2}");
+            fail("should have failed to parse");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("line 3"));
+        }
+    }
+
+    @Test(expected = InvalidConfigException.class)
+    public void rejectsArrayElementsContainingSeparator() throws IOException {
+        load(new JsonConfigLoader(), "{\"hosts\":[\"a,b\"]}");
+    }
+
+    @Test
+    public void canLoadYaml() throws IOException {
+        Properties p = load(new YamlConfigLoader(),
+                "# service config\n"
+                        + "---\n"
+                        + "db:\n"
+                        + "  url: \"jdbc:mydb/test\"   # quoted\n"
+                        + "  connectTimeout: 1000\n"
+                        + "hosts:\n"
+                        + "- a\n"
+                        + "- 'b'\n"
+                        + "flags: [X, Y]\n"
+                        + "unset: ~\n");
+
+        ServerProps props = binder.bindAndValidate(ServerProps.class, p);
+        assertEquals("jdbc:mydb/test", props.dbUrl());
+        assertEquals(1000, props.connectTimeout());
+        assertThat(props.hosts(), equalTo(Arrays.asList("a", "b")));
+        assertArrayEquals(new String[] { "X", "Y" }, props.flags());
+        assertFalse(p.containsKey("unset"));
+    }
+
+    @Test
+    public void canLoadYamlSequencesOfMappings() throws IOException {
+        Properties p = load(new YamlConfigLoader(),
+                "servers:\n"
+                        + "  - host: a\n"
+                        + "    port: 1\n"
+                        + "  - host: b\n"
+                        + "    tags:\n"
+                        + "      - x\n"
+                        + "      - y\n"
+                        + "name: svc\n");
+        assertEquals("a", p.getProperty("servers.0.host"));
+        assertEquals("1", p.getProperty("servers.0.port"));
+        assertEquals("b", p.getProperty("servers.1.host"));
+        assertEquals("x,y", p.getProperty("servers.1.tags"));
+        assertEquals("svc", p.getProperty("name"));
+    }
+
+    @Test
+    public void reportsYamlIndentationErrorsWithPosition() throws IOException {
+        try {
+            load(new YamlConfigLoader(), "a: 1\n  b: 2\n");
+            fail("should have failed to parse");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("line 2"));
+        }
+    }
+
+    @Test(expected = InvalidConfigException.class)
+    public void rejectsYamlAnchors() throws IOException {
+        load(new YamlConfigLoader(), "a: &anchor 1\n");
+    }
+
+    @Test
+    public void canLoadHocon() throws IOException {
+        Properties p = load(new HoconConfigLoader(),
+                "// service config\n"
+                        + "db {\n"
+                        + "  url = \"jdbc:mydb/test\"\n"
+                        + "  connectTimeout : 1000 # inline comment\n"
+                        + "}\n"
+                        + "hosts = [ a, b ]\n"
+                        + "flags = [\n  X\n  Y\n]\n");
+
+        ServerProps props = binder.bindAndValidate(ServerProps.class, p);
+        assertEquals("jdbc:mydb/test", props.dbUrl());
+        assertEquals(1000, props.connectTimeout());
+        assertThat(props.hosts(), equalTo(Arrays.asList("a", "b")));
+        assertArrayEquals(new String[] { "X", "Y" }, props.flags());
+    }
+
+    @Test
+    public void mergesHoconDottedKeysAndObjects() throws IOException {
+        Properties p = load(new HoconConfigLoader(),
+                "{ a.b = 1, a { c = two words }, a.b = 3, text = \"\"\"multi\nline\"\"\" }");
+        assertEquals("3", p.getProperty("a.b"));
+        assertEquals("two words", p.getProperty("a.c"));
+        assertEquals("multi\nline", p.getProperty("text"));
+    }
+
+    @Test
+    public void canLoadHoconPathsAndQuotesBeforeClosingTripleQuotes() throws IOException {
+        Properties p = load(new HoconConfigLoader(),
+                "log.dir = /var/log/app // comment\n"
+                        + "roots = [ /a, /b/c ]\n"
+                        + "quoted = \"\"\"x\"\"\"\"\n"
+                        + "twice = \"\"\"y\"\"\"\"\"\n");
+        assertEquals("/var/log/app", p.getProperty("log.dir"));
+        assertEquals("/a,/b/c", p.getProperty("roots"));
+        assertEquals("x\"", p.getProperty("quoted"));
+        assertEquals("y\"\"", p.getProperty("twice"));
+    }
+
+    @Test
+    public void hoconValuesAndObjectsReplaceEachOther() throws IOException {
+        Properties p = load(new HoconConfigLoader(),
+                "a { x = 1, y { z = 2 } }\na = 5\n"
+                        + "b = 5\nb { x = 1 }\n"
+                        + "c.x = 1\nc = [ 1, 2 ]\n"
+                        + "d { x = 1 }\nd { y = 2 }\n"
+                        + "e = 5\ne.f.g = 1\n");
+        assertEquals("5", p.getProperty("a"));
+        assertFalse(p.containsKey("a.x"));
+        assertFalse(p.containsKey("a.y.z"));
+        assertEquals("1", p.getProperty("b.x"));
+        assertFalse(p.containsKey("b"));
+        assertEquals("1,2", p.getProperty("c"));
+        assertFalse(p.containsKey("c.x"));
+        assertEquals("1", p.getProperty("d.x"));
+        assertEquals("2", p.getProperty("d.y"));
+        assertEquals("1", p.getProperty("e.f.g"));
+        assertFalse(p.containsKey("e"));
+    }
+
+    @Test(expected = InvalidConfigException.class)
+    public void rejectsHoconSubstitutions() throws IOException {
+        load(new HoconConfigLoader(), "a = ${b}\n");
+    }
+
+    @Test
+    public void reportsInvalidYamlUnicodeEscapes() throws IOException {
+        try {
+            load(new YamlConfigLoader(), "a: \"\\uZZZZ\"\n");
+            fail("should have failed to parse");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("Invalid unicode escape"));
+        }
+    }
+}
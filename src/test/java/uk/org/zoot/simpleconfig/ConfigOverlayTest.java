@@ -0,0 +1,147 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public class ConfigOverlayTest {
+
+    public interface ExperimentProps {
+        @ConfigProperty("variant")
+        public String variant();
+
+        @ConfigProperty(value = "timeout", defaultValue = "100")
+        public int timeout();
+
+        @ConfigProperty(value = "hosts", required = false)
+        public List<String> hosts();
+    }
+
+    ConfigBinder binder = new ConfigBinder();
+
+    ExperimentProps props = binder.bind(ExperimentProps.class,
+            new ConfigBinderTest.PropertyBuilder().withProperty("variant", "control")
+                    .withProperty("hosts", "a,b").build());
+
+    @Test
+    public void overridesValuesOnCurrentThreadOnly() throws Exception {
+        final ConfigOverlay overlay = binder.overlay(ImmutableMap.of("variant", "treatment"));
+
+        String inside = overlay.call(new Callable<String>() {
+
+            @Override
+            public String call() {
+                assertSame(overlay, ConfigOverlay.current());
+                assertEquals(100, props.timeout());
+                return props.variant();
+            }
+        });
+
+        assertEquals("treatment", inside);
+        assertEquals("control", props.variant());
+        assertNull(ConfigOverlay.current());
+    }
+
+    @Test
+    public void otherThreadsReadUnderlyingValuesWhileAnOverlayIsActive() throws Exception {
+        final ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            String seen = binder.overlay(ImmutableMap.of("variant", "treatment")).call(new Callable<String>() {
+
+                @Override
+                public String call() throws Exception {
+                    return other.submit(new Callable<String>() {
+
+                        @Override
+                        public String call() {
+                            assertNull(ConfigOverlay.current());
+                            return props.variant();
+                        }
+                    }).get();
+                }
+            });
+            assertEquals("control", seen);
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    @Test
+    public void overlayIsDeactivatedWhenTaskFails() {
+        try {
+            binder.overlay(ImmutableMap.of("variant", "treatment")).run(new Runnable() {
+
+                @Override
+                public void run() {
+                    throw new IllegalStateException("failed");
+                }
+            });
+            fail("expected the task to fail");
+        } catch (IllegalStateException e) {
+            assertNull(ConfigOverlay.current());
+            assertEquals("control", props.variant());
+        }
+    }
+
+    @Test
+    public void innerOverlayReplacesOuterOverlay() {
+        final ConfigOverlay outer = binder.overlay(ImmutableMap.of("variant", "outer", "timeout", "5"));
+        final ConfigOverlay inner = binder.overlay(ImmutableMap.of("variant", "inner"));
+
+        outer.run(new Runnable() {
+
+            @Override
+            public void run() {
+                inner.run(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        assertEquals("inner", props.variant());
+                        assertEquals(100, props.timeout());
+                    }
+                });
+                assertEquals("outer", props.variant());
+                assertEquals(5, props.timeout());
+            }
+        });
+    }
+
+    @Test
+    public void viewAppliesOverlayWithoutActivatingIt() {
+        ConfigOverlay overlay = binder.overlay(ImmutableMap.of("timeout", "7"));
+        ExperimentProps view = overlay.view(props);
+
+        assertEquals(7, view.timeout());
+        assertEquals("control", view.variant());
+        assertEquals(100, props.timeout());
+        assertSame(((ConfigProxy) props).getDescriptors(), ((ConfigProxy) view).getDescriptors());
+    }
+
+    @Test
+    public void multiValuedOverridesReturnFreshContainers() {
+        ExperimentProps view = binder.overlay(ImmutableMap.of("hosts", "x,y")).view(props);
+
+        view.hosts().clear();
+        assertThat(view.hosts(), equalTo(Arrays.asList("x", "y")));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void invalidOverridesFailOnRead() {
+        binder.overlay(ImmutableMap.of("timeout", "soon")).view(props).timeout();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotViewUnboundObjects() {
+        binder.overlay(ImmutableMap.<String, String> of()).view(new Properties());
+    }
+}
@@ -0,0 +1,231 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.org.zoot.simpleconfig.constraints.Min;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public class ConfigSnapshotTest {
+
+    public enum Flag {
+        A, B, C
+    }
+
+    public interface SnapshotProps {
+        @ConfigProperty("name")
+        public String name();
+
+        @ConfigProperty(value = "count", defaultValue = "5")
+        public int count();
+
+        @ConfigProperty("ratio")
+        public double ratio();
+
+        @ConfigProperty(value = "flags", required = false)
+        public Set<Flag> flags();
+
+        @ConfigProperty(value = "hosts", required = false)
+        public String[] hosts();
+
+        @ConfigProperty(value = "optional", required = false)
+        public String optional();
+    }
+
+    public interface OtherProps {
+        @ConfigProperty("name")
+        public String name();
+    }
+
+    public interface LooseProps {
+        @ConfigProperty("count")
+        @Min(1)
+        public int count();
+    }
+
+    public interface StrictProps {
+        @ConfigProperty("count")
+        @Min(10)
+        public int count();
+    }
+
+    static class CountingLoader extends ConfigLoader {
+        int loads;
+
+        @Override
+        public void load(Reader reader, Properties target) throws IOException {
+            loads++;
+            target.load(reader);
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    ConfigBinder binder = new ConfigBinder();
+    CountingLoader loader = new CountingLoader();
+    File snapshotFile;
+    File source;
+
+    @Before
+    public void setUp() throws IOException {
+        snapshotFile = new File(folder.getRoot(), "config.snapshot");
+        source = folder.newFile("config.properties");
+        write("name=svc\nratio=0.5\nflags=A,C\nhosts=h1,h2\n");
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(content, source, Charsets.ISO_8859_1);
+    }
+
+    private ConfigSnapshot load(Class<?>... types) throws IOException {
+        return binder.loadSnapshot(snapshotFile, Files.asByteSource(source), loader, types);
+    }
+
+    @Test
+    public void bindsConvertedValuesFromSnapshot() throws IOException {
+        SnapshotProps props = binder.bind(SnapshotProps.class, load(SnapshotProps.class));
+
+        assertEquals("svc", props.name());
+        assertEquals(5, props.count());
+        assertEquals(0.5, props.ratio(), 1e-15);
+        assertThat(props.flags(), equalTo((Set<Flag>) EnumSet.of(Flag.A, Flag.C)));
+        assertArrayEquals(new String[] { "h1", "h2" }, props.hosts());
+        assertNull(props.optional());
+        assertTrue(props instanceof ConfigProxy);
+    }
+
+    @Test
+    public void skipsParsingWhenSnapshotMatches() throws IOException {
+        load(SnapshotProps.class, OtherProps.class);
+        assertTrue(snapshotFile.isFile());
+
+        ConfigSnapshot snapshot = load(SnapshotProps.class, OtherProps.class);
+        assertEquals(1, loader.loads);
+        assertEquals("svc", binder.bind(OtherProps.class, snapshot).name());
+        assertThat(Arrays.asList(binder.bind(SnapshotProps.class, snapshot).hosts()),
+                equalTo(Arrays.asList("h1", "h2")));
+    }
+
+    @Test
+    public void reloadsWhenSourceChanges() throws IOException {
+        load(SnapshotProps.class);
+        write("name=changed\nratio=1\n");
+
+        SnapshotProps props = binder.bind(SnapshotProps.class, load(SnapshotProps.class));
+        assertEquals(2, loader.loads);
+        assertEquals("changed", props.name());
+    }
+
+    @Test
+    public void reloadsWhenInterfacesChange() throws IOException {
+        load(SnapshotProps.class);
+        ConfigSnapshot snapshot = load(SnapshotProps.class, OtherProps.class);
+        assertEquals(2, loader.loads);
+        assertTrue(snapshot.contains(OtherProps.class));
+    }
+
+    @Test
+    public void ignoresCorruptSnapshot() throws IOException {
+        load(SnapshotProps.class);
+        byte[] bytes = Files.toByteArray(snapshotFile);
+        Files.write(Arrays.copyOf(bytes, bytes.length - 3), snapshotFile);
+
+        SnapshotProps props = binder.bind(SnapshotProps.class, load(SnapshotProps.class));
+        assertEquals(2, loader.loads);
+        assertEquals("svc", props.name());
+    }
+
+    @Test
+    public void ignoresSnapshotWithCorruptValue() throws IOException {
+        load(SnapshotProps.class);
+        byte[] bytes = Files.toByteArray(snapshotFile);
+        String content = new String(bytes, Charsets.ISO_8859_1);
+        int value = content.indexOf("svc");
+        bytes[value] = 'x';
+        Files.write(bytes, snapshotFile);
+
+        SnapshotProps props = binder.bind(SnapshotProps.class, load(SnapshotProps.class));
+        assertEquals(2, loader.loads);
+        assertEquals("svc", props.name());
+    }
+
+    @Test
+    public void readsSourceOnce() throws IOException {
+        final int[] opens = { 0 };
+        ByteSource counting = new ByteSource() {
+
+            @Override
+            public InputStream openStream() throws IOException {
+                opens[0]++;
+                return new ByteArrayInputStream("name=once\nratio=1\n".getBytes(Charsets.ISO_8859_1));
+            }
+        };
+        ConfigSnapshot snapshot = binder.loadSnapshot(snapshotFile, counting, loader, SnapshotProps.class);
+        assertEquals("once", binder.bind(SnapshotProps.class, snapshot).name());
+        assertEquals(1, opens[0]);
+    }
+
+    @Test
+    public void validatesSourceBeforeWritingSnapshot() throws IOException {
+        write("ratio=1\n");
+        try {
+            load(SnapshotProps.class);
+            fail("should have failed validation");
+        } catch (InvalidConfigException e) {
+            assertFalse(snapshotFile.exists());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsToBindTypeMissingFromSnapshot() throws IOException {
+        binder.bind(OtherProps.class, load(SnapshotProps.class));
+    }
+
+    @Test
+    public void returnsFreshContainersOnEachCall() throws IOException {
+        SnapshotProps props = binder.bind(SnapshotProps.class, load(SnapshotProps.class));
+        props.hosts()[0] = "modified";
+        assertEquals("h1", props.hosts()[0]);
+    }
+
+    @Test
+    public void canHashInMemorySources() throws IOException {
+        ConfigSnapshot snapshot = binder.loadSnapshot(snapshotFile,
+                ByteStreams.asByteSource("name=mem\nratio=2\n".getBytes(Charsets.ISO_8859_1)),
+                new PropertiesConfigLoader(), SnapshotProps.class);
+        assertEquals("mem", binder.bind(SnapshotProps.class, snapshot).name());
+    }
+
+    @Test
+    public void constraintsArePartOfTheSnapshotKey() throws IOException {
+        // the same interface before and after tightening a constraint
+        assertFalse(ConfigSnapshot.hash(Files.asByteSource(source), loader,
+                ImmutableMap.<Class<?>, Map<Method, PropertyDescription>> of(LooseProps.class,
+                        binder.extractDescriptors(LooseProps.class))).equals(
+                ConfigSnapshot.hash(Files.asByteSource(source), loader,
+                        ImmutableMap.<Class<?>, Map<Method, PropertyDescription>> of(LooseProps.class,
+                                binder.extractDescriptors(StrictProps.class)))));
+    }
+}
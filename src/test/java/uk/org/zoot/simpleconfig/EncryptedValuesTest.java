@@ -0,0 +1,207 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public class EncryptedValuesTest {
+
+    public interface CredentialProps {
+        @ConfigProperty("db.user")
+        public String user();
+
+        @ConfigProperty(value = "db.password", secret = true, description = "The database password")
+        @uk.org.zoot.simpleconfig.constraints.Pattern("[a-z]+")
+        public String password();
+
+        @ConfigProperty(value = "api.key", secret = true, required = false)
+        public String apiKey();
+    }
+
+    public interface InvalidSecretProps {
+        @ConfigProperty(value = "port", secret = true)
+        public int port();
+    }
+
+    static SecretKey key(int seed) {
+        byte[] bytes = new byte[16];
+        bytes[0] = (byte) seed;
+        return new SecretKeySpec(bytes, "AES");
+    }
+
+    static class CountingKeyProvider implements KeyProvider {
+        final Map<String, SecretKey> keys = new HashMap<String, SecretKey>();
+        int lookups;
+
+        @Override
+        public SecretKey getKey(String keyId) {
+            lookups++;
+            return keys.get(keyId);
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    CountingKeyProvider keys = new CountingKeyProvider();
+    ConfigBinder binder = new ConfigBinder(keys);
+
+    {
+        keys.keys.put("k1", key(1));
+    }
+
+    @Test
+    public void decryptsSecretValuesOnce() throws Exception {
+        Properties properties = new ConfigBinderTest.PropertyBuilder().withProperty("db.user", "app")
+                .withProperty("db.password", EncryptedValues.encrypt("k1", key(1), "hunter")).build();
+        CredentialProps props = binder.bindAndValidate(CredentialProps.class, properties);
+
+        assertEquals("hunter", props.password());
+        assertEquals("hunter", props.password());
+        assertNull(props.apiKey());
+        assertEquals(1, keys.lookups);
+    }
+
+    @Test
+    public void encryptionIsRandomised() throws Exception {
+        String first = EncryptedValues.encrypt("k1", key(1), "hunter");
+        assertTrue(EncryptedValues.isEncrypted(first));
+        assertFalse(first.equals(EncryptedValues.encrypt("k1", key(1), "hunter")));
+        assertFalse(EncryptedValues.isEncrypted("hunter"));
+    }
+
+    @Test
+    public void decryptsChangedValuesAfterReload() throws Exception {
+        Properties properties = new ConfigBinderTest.PropertyBuilder().withProperty("db.user", "app")
+                .withProperty("db.password", EncryptedValues.encrypt("k1", key(1), "hunter")).build();
+        CredentialProps props = binder.bind(CredentialProps.class, properties);
+        props.password();
+
+        keys.keys.put("k2", key(2));
+        properties.setProperty("db.password", EncryptedValues.encrypt("k2", key(2), "rotated"));
+        assertEquals("rotated", props.password());
+    }
+
+    @Test
+    public void invalidationPicksUpReplacedKeys() throws Exception {
+        String encrypted = EncryptedValues.encrypt("k1", key(1), "hunter");
+        CredentialProps props = binder.bind(CredentialProps.class, new ConfigBinderTest.PropertyBuilder()
+                .withProperty("db.user", "app").withProperty("db.password", encrypted).build());
+        props.password();
+
+        keys.keys.put("k1", key(3));
+        assertEquals("cached values are not decrypted again", "hunter", props.password());
+        binder.invalidateSecrets();
+        try {
+            props.password();
+            fail("expected the replaced key to be used");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("cannot be decrypted with key k1"));
+        }
+    }
+
+    @Test
+    public void masksSecretValuesInErrors() throws Exception {
+        Properties properties = new ConfigBinderTest.PropertyBuilder().withProperty("db.user", "app")
+                .withProperty("db.password", EncryptedValues.encrypt("k1", key(1), "Hunter2")).build();
+        try {
+            binder.validate(CredentialProps.class, properties);
+            fail("expected a pattern violation");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("Property db.password value **** does not match"));
+            assertThat(e.getMessage(), not(containsString("Hunter2")));
+        }
+    }
+
+    @Test
+    public void rejectsUnencryptedAndUnknownValues() throws Exception {
+        Properties properties = new ConfigBinderTest.PropertyBuilder().withProperty("db.user", "app")
+                .withProperty("db.password", "hunter")
+                .withProperty("api.key", EncryptedValues.encrypt("other", key(1), "abc")).build();
+        try {
+            binder.validate(CredentialProps.class, properties);
+            fail("expected invalid secrets");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("db.password is secret but its value is not encrypted"));
+            assertThat(e.getMessage(), containsString("api.key is encrypted with unknown key other"));
+            assertThat(e.getMessage(), not(containsString("hunter")));
+        }
+    }
+
+    @Test
+    public void rejectsTamperedValues() throws Exception {
+        String encrypted = EncryptedValues.encrypt("k1", key(1), "hunter");
+        int prefix = "ENC(k1:".length();
+        byte[] data = BaseEncoding.base64().decode(
+                encrypted.substring(prefix, encrypted.length() - 1));
+        data[20] ^= 1;
+        String tampered = "ENC(k1:" + BaseEncoding.base64().encode(data) + ")";
+        try {
+            binder.validate(CredentialProps.class, new ConfigBinderTest.PropertyBuilder()
+                    .withProperty("db.user", "app").withProperty("db.password", tampered).build());
+            fail("expected the MAC check to fail");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("db.password cannot be decrypted with key k1"));
+        }
+    }
+
+    @Test(expected = InvalidConfigException.class)
+    public void requiresKeyProviderForSecrets() throws Exception {
+        new ConfigBinder().validate(CredentialProps.class, new ConfigBinderTest.PropertyBuilder()
+                .withProperty("db.user", "app")
+                .withProperty("db.password", EncryptedValues.encrypt("k1", key(1), "hunter")).build());
+    }
+
+    @Test(expected = InvalidConfigInterfaceException.class)
+    public void onlyStringPropertiesMayBeSecret() {
+        binder.extractDescriptors(InvalidSecretProps.class);
+    }
+
+    @Test
+    public void secretsAreFlaggedInPropertyDescription() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(bos);
+        binder.printPropertyDescription(ps, CredentialProps.class);
+        ps.flush();
+        assertThat(new String(bos.toByteArray()),
+                containsString("db.password : The database password (required,secret,pattern=[a-z]+)"));
+    }
+
+    @Test
+    public void keyProvidersReturnNullForUnknownKeys() {
+        KeyProvider provider = KeyProviders.of(ImmutableMap.of("k1", key(1)));
+        assertEquals(key(1), provider.getKey("k1"));
+        assertNull(provider.getKey("k2"));
+    }
+
+    @Test
+    public void snapshotsKeepSecretsEncrypted() throws Exception {
+        File snapshotFile = new File(folder.getRoot(), "config.snapshot");
+        String content = "db.user=app\ndb.password=" + EncryptedValues.encrypt("k1", key(1), "hunter") + "\n";
+        ConfigSnapshot snapshot = binder.loadSnapshot(snapshotFile,
+                ByteStreams.asByteSource(content.getBytes(Charsets.ISO_8859_1)),
+                new PropertiesConfigLoader(), CredentialProps.class);
+
+        assertEquals("hunter", binder.bind(CredentialProps.class, snapshot).password());
+        assertThat(new String(Files.toByteArray(snapshotFile), Charsets.ISO_8859_1), not(containsString("hunter")));
+    }
+}
@@ -0,0 +1,137 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public class RelaxedPropertySourceTest {
+
+    public interface DbProps {
+        @ConfigProperty("db.url")
+        public String url();
+
+        public int connectTimeout();
+
+        @ConfigProperty(value = "pool.max-size", defaultValue = "10")
+        public int poolMaxSize();
+    }
+
+    public interface CollidingProps {
+        @ConfigProperty("db.url")
+        public String url();
+
+        @ConfigProperty("dbUrl")
+        public String otherUrl();
+    }
+
+    ConfigBinder binder = new ConfigBinder();
+
+    Properties file = new ConfigBinderTest.PropertyBuilder()
+            .withProperty("db.url", "jdbc:file")
+            .withProperty("connect-timeout", "100").build();
+
+    @Test
+    public void matchesAnySpellingOfAName() {
+        RelaxedPropertySource source = RelaxedPropertySource.builder()
+                .add(ImmutableMap.of("DB_URL", "jdbc:env", "CONNECT_TIMEOUT", "5", "poolMaxSize", "20")).build();
+        DbProps props = binder.bindAndValidate(DbProps.class, source);
+
+        assertEquals("jdbc:env", props.url());
+        assertEquals(5, props.connectTimeout());
+        assertEquals(20, props.poolMaxSize());
+        assertEquals("jdbc:env", source.getProperty("db-url"));
+        assertNull(source.getProperty("db.user"));
+    }
+
+    @Test
+    public void laterLayersOverrideEarlierLayers() {
+        RelaxedPropertySource source = RelaxedPropertySource.builder().add(file)
+                .add(ImmutableMap.of("DB_URL", "jdbc:env")).build();
+        DbProps props = binder.bindAndValidate(DbProps.class, source);
+
+        assertEquals("jdbc:env", props.url());
+        assertEquals(100, props.connectTimeout());
+        assertEquals(10, props.poolMaxSize());
+    }
+
+    @Test
+    public void reportsAmbiguousValuesWithinALayer() {
+        file.setProperty("DB_URL", "jdbc:other");
+        file.setProperty("connectTimeout", "100");
+        RelaxedPropertySource source = RelaxedPropertySource.builder().add(file).build();
+        try {
+            binder.validate(DbProps.class, source);
+            fail("expected an ambiguous property");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(),
+                    containsString("Property db.url is ambiguous, it is set with different values by DB_URL, db.url"));
+            assertFalse(e.getMessage().contains("connectTimeout"));
+        }
+    }
+
+    @Test
+    public void laterLayersResolveAmbiguity() {
+        file.setProperty("DB_URL", "jdbc:other");
+        RelaxedPropertySource source = RelaxedPropertySource.builder().add(file)
+                .add(ImmutableMap.of("db.url", "jdbc:override")).build();
+
+        assertEquals("jdbc:override", binder.bindAndValidate(DbProps.class, source).url());
+    }
+
+    @Test
+    public void descriptorsPrecomputeRelaxedKeys() {
+        for (PropertyDescription desc : binder.extractDescriptors(DbProps.class).values()) {
+            assertEquals(RelaxedPropertySource.relaxedKey(desc.getProperty()), desc.getRelaxedKey());
+        }
+        assertEquals("poolmaxsize", RelaxedPropertySource.relaxedKey("POOL_MAX_SIZE"));
+    }
+
+    @Test
+    public void reportsAmbiguousValuesThroughWrappingSources() {
+        file.setProperty("DB_URL", "jdbc:other");
+        CachingPropertySource source = CachingPropertySource.builder(
+                RelaxedPropertySource.builder().add(file).build()).build();
+        try {
+            binder.validate(DbProps.class, source);
+            fail("expected an ambiguous property");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("Property db.url is ambiguous"));
+        }
+    }
+
+    @Test
+    public void readsRelaxedValuesThroughWrappingSources() {
+        CachingPropertySource source = CachingPropertySource.builder(RelaxedPropertySource.builder()
+                .add(ImmutableMap.of("DB_URL", "jdbc:env", "CONNECT_TIMEOUT", "5")).build()).build();
+        DbProps props = binder.bindAndValidate(DbProps.class, source);
+
+        assertEquals("jdbc:env", props.url());
+        assertEquals(5, props.connectTimeout());
+    }
+
+    @Test
+    public void reportsPropertiesWhichOnlyDifferInSeparators() {
+        RelaxedPropertySource source = RelaxedPropertySource.builder().add(file).build();
+        try {
+            binder.validate(CollidingProps.class, source);
+            fail("expected colliding properties");
+        } catch (InvalidConfigException e) {
+            assertThat(e.getMessage(), containsString("only differ in case or separators"));
+        }
+    }
+
+    @Test
+    public void propertiesWhichOnlyDifferInSeparatorsBindStrictly() {
+        Properties strict = new ConfigBinderTest.PropertyBuilder()
+                .withProperty("db.url", "jdbc:a").withProperty("dbUrl", "jdbc:b").build();
+        CollidingProps props = binder.bindAndValidate(CollidingProps.class, strict);
+
+        assertEquals("jdbc:a", props.url());
+        assertEquals("jdbc:b", props.otherUrl());
+    }
+}
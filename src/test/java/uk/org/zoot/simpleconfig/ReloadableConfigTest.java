@@ -0,0 +1,172 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public class ReloadableConfigTest {
+
+    public interface ServerProps {
+        @ConfigProperty("server.name")
+        public String name();
+
+        @ConfigProperty(value = "server.port", defaultValue = "80")
+        public int port();
+
+        @ConfigProperty(value = "server.hosts", required = false)
+        public List<String> hosts();
+    }
+
+    public interface ClientProps {
+        @ConfigProperty("server.name")
+        public String serverName();
+
+        @ConfigProperty(value = "client.retries", defaultValue = "3")
+        public int retries();
+    }
+
+    static final String FILE = "# comment\n"
+            + "server.name = alpha\n"
+            + "server.hosts=a,\\\n"
+            + "    b\n"
+            + "unused.key=1\n";
+
+    ConfigBinder binder = new ConfigBinder();
+    ReloadableConfig config = binder.reloadable(ServerProps.class, ClientProps.class);
+
+    static Set<String> reload(ReloadableConfig config, String content) throws IOException {
+        return config.reload(new StringReader(content));
+    }
+
+    static void readLines(String content) throws IOException {
+        PropertiesLines lines = new PropertiesLines();
+        PropertiesLines.Changes changes = lines.read(new StringReader(content));
+        changes.apply();
+        Properties expected = new Properties();
+        expected.load(new StringReader(content));
+        for (String key : expected.stringPropertyNames()) {
+            assertEquals(key, expected.getProperty(key), lines.getProperty(key));
+        }
+        assertEquals(expected.size(), changes.getChangedKeys().size());
+    }
+
+    @Test
+    public void readsLinesAsPropertiesDoes() throws IOException {
+        readLines(FILE);
+        readLines("a=1\r\nb : 2\rc 3\n  d\t=\t4  \n! comment\n#x=\\\ne=5\n");
+        readLines("key\\ with\\ spaces=v\\u00e9\\t\\n\\\\\nf=\\\n\\\n  g\\\\\nempty\nh= \\\n   # not a comment\n");
+        readLines("k\\=x\\:y=z\ntrailing=\\");
+    }
+
+    @Test
+    public void loadsAndValidatesAllPropertiesInitially() throws IOException {
+        Set<String> changed = reload(config, FILE);
+
+        ServerProps server = config.get(ServerProps.class);
+        assertEquals("alpha", server.name());
+        assertEquals(80, server.port());
+        assertThat(server.hosts(), equalTo(Arrays.asList("a", "b")));
+        assertEquals(3, config.get(ClientProps.class).retries());
+        assertEquals(ImmutableSet.of("server.name", "server.hosts", "unused.key"), changed);
+        assertEquals("1", config.getProperty("unused.key"));
+    }
+
+    @Test
+    public void reportsOnlyChangedKeys() throws IOException {
+        reload(config, FILE);
+        Set<String> changed = reload(config, FILE.replace("alpha", "beta") + "server.port=8080\n");
+
+        assertEquals(ImmutableSet.of("server.name", "server.port"), changed);
+        assertEquals("beta", config.get(ServerProps.class).name());
+        assertEquals("beta", config.get(ClientProps.class).serverName());
+        assertEquals(8080, config.get(ServerProps.class).port());
+        assertTrue(reload(config, FILE.replace("alpha", "beta") + "server.port=8080\n").isEmpty());
+    }
+
+    @Test
+    public void parsesOnlyChangedLines() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("key.").append(i).append('=').append(i).append('\n');
+        }
+        PropertiesLines lines = new PropertiesLines();
+        PropertiesLines.Changes first = lines.read(new StringReader(content.toString()));
+        first.apply();
+        PropertiesLines.Changes second = lines.read(new StringReader(
+                content.toString().replace("key.500=500\n", "key.500=changed\n") + "key.new=x\n"));
+
+        assertEquals(1000, first.getParsedLineCount());
+        assertEquals(2, second.getParsedLineCount());
+        assertEquals(ImmutableSet.of("key.500", "key.new"), second.getChangedKeys());
+        assertEquals("changed", second.getProperty("key.500"));
+        assertEquals("500", lines.getProperty("key.500"));
+        second.apply();
+        assertEquals("changed", lines.getProperty("key.500"));
+
+        PropertiesLines.Changes shifted = lines.read(new StringReader("key.first=1\n"
+                + content.toString().replace("key.500=500\n", "key.500=changed\n").replace("key.10=10\n", "")
+                + "key.new=x\n"));
+        assertEquals(1, shifted.getParsedLineCount());
+        assertEquals(ImmutableSet.of("key.first", "key.10"), shifted.getChangedKeys());
+    }
+
+    @Test
+    public void detectsRemovedAndReorderedKeys() throws IOException {
+        PropertiesLines lines = new PropertiesLines();
+        lines.read(new StringReader("a=1\nb=2\na=3\n")).apply();
+        assertEquals("3", lines.getProperty("a"));
+        PropertiesLines.Changes reordered = lines.read(new StringReader("a=3\na=1\n"));
+
+        assertEquals(0, reordered.getParsedLineCount());
+        assertEquals(ImmutableSet.of("a", "b"), reordered.getChangedKeys());
+        reordered.apply();
+        assertEquals("1", lines.getProperty("a"));
+        assertNull(lines.getProperty("b"));
+
+        lines.read(new StringReader("a=1\n")).apply();
+        PropertiesLines.Changes added = lines.read(new StringReader("a=1\na=2\n"));
+        assertEquals(ImmutableSet.of("a"), added.getChangedKeys());
+        added.apply();
+        assertEquals(ImmutableSet.of("a"), lines.read(new StringReader("a=2\na=1\n")).getChangedKeys());
+    }
+
+    @Test
+    public void keepsPreviousValuesWhenReloadIsInvalid() throws IOException {
+        reload(config, FILE);
+        try {
+            reload(config, FILE.replace("server.name = alpha\n", "server.port=8080\n"));
+            fail("expected an invalid reload");
+        } catch (InvalidConfigException e) {
+            assertEquals("alpha", config.get(ServerProps.class).name());
+            assertEquals(80, config.get(ServerProps.class).port());
+        }
+        assertEquals(ImmutableSet.of("server.name"), reload(config, FILE.replace("alpha", "gamma")));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void failsInitialLoadWithInvalidValues() throws IOException {
+        reload(config, FILE + "client.retries=many\n");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotReadBeforeLoad() {
+        config.get(ServerProps.class).name();
+    }
+
+    @Test
+    public void returnsFreshContainers() throws IOException {
+        reload(config, FILE);
+        config.get(ServerProps.class).hosts().clear();
+        assertEquals(2, config.get(ServerProps.class).hosts().size());
+    }
+}
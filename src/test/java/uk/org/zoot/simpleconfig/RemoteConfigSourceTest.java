@@ -0,0 +1,244 @@
+package uk.org.zoot.simpleconfig;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RemoteConfigSourceTest {
+
+    public interface ServiceProps {
+        @ConfigProperty("name")
+        public String name();
+
+        @ConfigProperty(value = "port", defaultValue = "80")
+        public int port();
+    }
+
+    static class ConfigHandler implements HttpHandler {
+        volatile String body = "name=first\n";
+        volatile boolean sendEtag = true;
+        final List<String> ifNoneMatch = new ArrayList<String>();
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String current = body;
+            String etag = "\"" + Integer.toHexString(current.hashCode()) + "\"";
+            synchronized (ifNoneMatch) {
+                ifNoneMatch.add(exchange.getRequestHeaders().getFirst("If-None-Match"));
+            }
+            if (sendEtag) {
+                exchange.getResponseHeaders().set("ETag", etag);
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+            }
+            byte[] bytes = current.getBytes(Charsets.ISO_8859_1);
+            exchange.sendResponseHeaders(200, bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        }
+    }
+
+    static class CountingLoader extends ConfigLoader {
+        volatile int loads;
+
+        @Override
+        public void load(Reader reader, Properties target) throws IOException {
+            loads++;
+            target.load(reader);
+        }
+    }
+
+    HttpServer server;
+    ConfigHandler handler = new ConfigHandler();
+    CountingLoader loader = new CountingLoader();
+    RemoteConfigSource.Builder builder;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/config", handler);
+        server.start();
+        URL url = new URL("http", "127.0.0.1", server.getAddress().getPort(), "/config");
+        builder = RemoteConfigSource.builder(url).loader(loader)
+                .validate(new ConfigBinder(), ServiceProps.class).interval(1, TimeUnit.HOURS);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void skipsParsingWhenNotModified() throws IOException {
+        RemoteConfigSource source = builder.build().start();
+        ServiceProps props = new ConfigBinder().bind(ServiceProps.class, source);
+        assertEquals("first", props.name());
+
+        assertFalse(source.poll());
+        assertFalse(source.poll());
+        assertEquals(1, loader.loads);
+        assertNull(handler.ifNoneMatch.get(0));
+        assertNotNull(handler.ifNoneMatch.get(1));
+        source.close();
+    }
+
+    @Test
+    public void replacesValuesWhenPayloadChanges() throws IOException {
+        RemoteConfigSource source = builder.build().start();
+        ServiceProps props = new ConfigBinder().bind(ServiceProps.class, source);
+
+        handler.body = "name=second\nport=8080\n";
+        assertTrue(source.poll());
+        assertEquals("second", props.name());
+        assertEquals(8080, props.port());
+        source.close();
+    }
+
+    @Test
+    public void skipsParsingIdenticalPayloadsWithoutEtag() throws IOException {
+        handler.sendEtag = false;
+        RemoteConfigSource source = builder.build().start();
+
+        assertFalse(source.poll());
+        assertEquals(1, loader.loads);
+        handler.body = "name=second\n";
+        assertTrue(source.poll());
+        assertEquals("second", source.getProperty("name"));
+        source.close();
+    }
+
+    @Test
+    public void keepsValuesWhenPayloadIsInvalid() throws IOException {
+        RemoteConfigSource source = builder.build().start();
+
+        handler.body = "port=8080\n";
+        try {
+            source.poll();
+            fail("expected the payload to fail validation");
+        } catch (InvalidConfigException e) {
+            assertEquals("first", source.getProperty("name"));
+            assertNull(source.getProperty("port"));
+        }
+
+        handler.body = "name=fixed\n";
+        assertTrue(source.poll());
+        assertEquals("fixed", source.getProperty("name"));
+        source.close();
+    }
+
+    @Test
+    public void skipsParsingARejectedPayloadUntilItChanges() throws IOException {
+        RemoteConfigSource source = builder.build().start();
+
+        handler.body = "port=8080\n";
+        for (int i = 0; i < 3; i++) {
+            try {
+                source.poll();
+                fail("expected the payload to fail validation");
+            } catch (InvalidConfigException e) {
+                assertSame(e, source.getLastFailure());
+            }
+        }
+        assertEquals(2, loader.loads);
+
+        handler.body = "name=fixed\n";
+        assertTrue(source.poll());
+        assertEquals(3, loader.loads);
+        source.close();
+    }
+
+    @Test
+    public void roundsSubMillisecondTimeoutsUp() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        server.createContext("/slow", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.close();
+            }
+        });
+        URL url = new URL("http", "127.0.0.1", server.getAddress().getPort(), "/slow");
+        RemoteConfigSource source = RemoteConfigSource.builder(url).timeout(1, TimeUnit.MICROSECONDS).build();
+        try {
+            source.start();
+            fail("expected the poll to time out");
+        } catch (SocketTimeoutException e) {
+            // a timeout of zero would have waited forever
+        } finally {
+            release.countDown();
+            source.close();
+        }
+    }
+
+    @Test(expected = InvalidConfigException.class)
+    public void failsToStartWithInvalidPayload() throws IOException {
+        handler.body = "port=8080\n";
+        builder.build().start();
+    }
+
+    @Test
+    public void pollsInBackground() throws Exception {
+        RemoteConfigSource source = builder.interval(10, TimeUnit.MILLISECONDS).build().start();
+
+        handler.body = "name=polled\n";
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!"polled".equals(source.getProperty("name")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("polled", source.getProperty("name"));
+        source.close();
+    }
+
+    @Test
+    public void recordsBackgroundPollFailures() throws Exception {
+        RemoteConfigSource source = builder.interval(10, TimeUnit.MILLISECONDS).build().start();
+        assertNull(source.getLastFailure());
+        assertTrue(source.getLastSuccessMillis() > 0);
+
+        handler.body = "port=8080\n";
+        long deadline = System.currentTimeMillis() + 5000;
+        while (source.getLastFailure() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(source.getLastFailure() instanceof InvalidConfigException);
+        long lastSuccess = source.getLastSuccessMillis();
+        Thread.sleep(50);
+        assertEquals("failed polls do not count as successful", lastSuccess, source.getLastSuccessMillis());
+        assertEquals("first", source.getProperty("name"));
+
+        handler.body = "name=fixed\n";
+        while (source.getLastFailure() != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNull(source.getLastFailure());
+        assertEquals("fixed", source.getProperty("name"));
+        source.close();
+    }
+}